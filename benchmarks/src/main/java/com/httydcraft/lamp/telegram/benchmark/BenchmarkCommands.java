@@ -0,0 +1,19 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+
+import revxrsal.commands.annotation.Command;
+
+/**
+ * Commands registered by the dispatch benchmarks.
+ */
+public class BenchmarkCommands {
+    @Command("echo")
+    public void echo(TelegramActor actor, String text) {
+        actor.reply(text);
+    }
+
+    @Command("ping")
+    public void ping(TelegramActor actor) {
+    }
+}
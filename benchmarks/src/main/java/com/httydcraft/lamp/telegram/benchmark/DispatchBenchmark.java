@@ -0,0 +1,60 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.httydcraft.lamp.telegram.dispatch.MessageDispatchSource;
+import com.pengrad.telegrambot.model.Message;
+
+/**
+ * Full dispatch of parsed updates through {@link TelegramHandler#dispatch(com.httydcraft.lamp.telegram.dispatch.DispatchSource)}
+ * against a stubbed bot, from dispatch source creation to the reply request.
+ * Run with {@code -prof gc} to see the bytes allocated per dispatched update.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchBenchmark {
+    private TelegramHandler handler;
+    private Message echo;
+    private Message ping;
+    private Message plainText;
+
+    @Setup
+    public void setup() {
+        handler = new TelegramHandler(new StubTelegramBot());
+        handler.register(new BenchmarkCommands());
+        echo = Updates.message("echo hello");
+        ping = Updates.message("ping");
+        plainText = Updates.message("just chatting, not a command");
+    }
+
+    @Benchmark
+    public void dispatchReplyingCommand() {
+        handler.dispatch(new MessageDispatchSource(echo));
+    }
+
+    @Benchmark
+    public void dispatchSilentCommand() {
+        handler.dispatch(new MessageDispatchSource(ping));
+    }
+
+    @Benchmark
+    public void dispatchNonCommand() {
+        handler.dispatch(new MessageDispatchSource(plainText));
+    }
+}
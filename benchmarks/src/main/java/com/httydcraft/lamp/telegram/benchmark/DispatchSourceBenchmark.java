@@ -0,0 +1,78 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.httydcraft.lamp.telegram.core.TelegramSenderResolver;
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.MessageDispatchSource;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.User;
+
+import revxrsal.commands.command.ExecutableCommand;
+
+/**
+ * Per-update object creation costs: dispatch source construction, actor wrapping and sender resolution.
+ * Run with {@code -prof gc} to see the bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DispatchSourceBenchmark {
+    private TelegramHandler handler;
+    private Message message;
+    private DispatchSource source;
+    private TelegramActor actor;
+    private ExecutableCommand command;
+
+    @Setup
+    public void setup() {
+        handler = new TelegramHandler(new StubTelegramBot());
+        handler.register(new BenchmarkCommands());
+        message = Updates.message("echo hello");
+        source = new MessageDispatchSource(message);
+        actor = TelegramActor.wrap(handler, source);
+        command = handler.getCommands().values().iterator().next();
+    }
+
+    @Benchmark
+    public void messageDispatchSource(Blackhole blackhole) {
+        MessageDispatchSource created = new MessageDispatchSource(message);
+        blackhole.consume(created.getExecutionText());
+        blackhole.consume(created.getChatIdentficator());
+        blackhole.consume(created.getAuthor());
+    }
+
+    @Benchmark
+    public void wrapActor(Blackhole blackhole) {
+        TelegramActor wrapped = TelegramActor.wrap(handler, source);
+        blackhole.consume(wrapped.getUniqueId());
+        blackhole.consume(wrapped.getName());
+    }
+
+    @Benchmark
+    public Object resolveUserSender() {
+        return TelegramSenderResolver.INSTANCE.getSender(User.class, actor, command);
+    }
+
+    @Benchmark
+    public Object resolveDispatchSourceSender() {
+        return TelegramSenderResolver.INSTANCE.getSender(DispatchSource.class, actor, command);
+    }
+}
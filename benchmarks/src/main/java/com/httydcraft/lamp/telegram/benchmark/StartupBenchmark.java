@@ -0,0 +1,66 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.httydcraft.lamp.telegram.core.CommandTreeSnapshot;
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.httydcraft.lamp.telegram.dispatch.MessageDispatchSource;
+import com.pengrad.telegrambot.model.Message;
+
+/**
+ * Cold start of a handler with {@value StartupCommands#COMMANDS_PER_CLASS} commands in each of the
+ * {@link StartupCommands} classes, up to and including the first dispatched command.
+ * Every measurement runs in a fresh JVM, so class loading and Lamp's reflective scanning are included.
+ * The snapshot of the lazy registration is captured from these classes at build time by
+ * {@link CommandTreeSnapshot#main(String[])}, see the exec plugin in the benchmarks pom.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(20)
+public class StartupBenchmark {
+    /**
+     * Class path resource holding the snapshot of the {@link StartupCommands} classes
+     */
+    private static final String SNAPSHOT = "startup-commands.snapshot";
+
+    private CommandTreeSnapshot snapshot;
+    private Message firstCommand;
+
+    @Setup
+    public void setup() {
+        snapshot = CommandTreeSnapshot.load(StartupBenchmark.class.getClassLoader(), SNAPSHOT);
+        if (snapshot == null)
+            throw new IllegalStateException(SNAPSHOT + " is missing, build the benchmarks with Maven");
+        firstCommand = Updates.message("games3 first");
+    }
+
+    @Benchmark
+    public TelegramHandler eagerRegistration() {
+        TelegramHandler handler = new TelegramHandler(new StubTelegramBot());
+        handler.register(StartupCommands.all());
+        handler.dispatch(new MessageDispatchSource(firstCommand));
+        return handler;
+    }
+
+    @Benchmark
+    public TelegramHandler lazyRegistration() {
+        TelegramHandler handler = new TelegramHandler(new StubTelegramBot());
+        handler.registerLazily(snapshot, StartupCommands.all());
+        handler.dispatch(new MessageDispatchSource(firstCommand));
+        return handler;
+    }
+}
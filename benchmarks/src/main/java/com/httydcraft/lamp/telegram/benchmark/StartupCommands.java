@@ -0,0 +1,355 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+
+import revxrsal.commands.annotation.Command;
+
+/**
+ * Command classes registered by the startup benchmark, {@value #COMMANDS_PER_CLASS} commands each.
+ */
+public final class StartupCommands {
+    /**
+     * Amount of commands declared by every class
+     */
+    public static final int COMMANDS_PER_CLASS = 20;
+
+    private StartupCommands() {
+    }
+
+    /**
+     * Creates an instance of every command class.
+     *
+     * @return the command instances
+     */
+    public static Object[] all() {
+        return new Object[] { new Admin(), new Economy(), new Games(), new Profile() };
+    }
+
+    public static class Admin {
+        @Command("admin0")
+        public void command0(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin1")
+        public void command1(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin2")
+        public void command2(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin3")
+        public void command3(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin4")
+        public void command4(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin5")
+        public void command5(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin6")
+        public void command6(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin7")
+        public void command7(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin8")
+        public void command8(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin9")
+        public void command9(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin10")
+        public void command10(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin11")
+        public void command11(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin12")
+        public void command12(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin13")
+        public void command13(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin14")
+        public void command14(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin15")
+        public void command15(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin16")
+        public void command16(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin17")
+        public void command17(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin18")
+        public void command18(TelegramActor actor, String argument) {
+        }
+
+        @Command("admin19")
+        public void command19(TelegramActor actor, String argument) {
+        }
+    }
+
+    public static class Economy {
+        @Command("economy0")
+        public void command0(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy1")
+        public void command1(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy2")
+        public void command2(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy3")
+        public void command3(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy4")
+        public void command4(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy5")
+        public void command5(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy6")
+        public void command6(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy7")
+        public void command7(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy8")
+        public void command8(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy9")
+        public void command9(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy10")
+        public void command10(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy11")
+        public void command11(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy12")
+        public void command12(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy13")
+        public void command13(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy14")
+        public void command14(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy15")
+        public void command15(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy16")
+        public void command16(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy17")
+        public void command17(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy18")
+        public void command18(TelegramActor actor, String argument) {
+        }
+
+        @Command("economy19")
+        public void command19(TelegramActor actor, String argument) {
+        }
+    }
+
+    public static class Games {
+        @Command("games0")
+        public void command0(TelegramActor actor, String argument) {
+        }
+
+        @Command("games1")
+        public void command1(TelegramActor actor, String argument) {
+        }
+
+        @Command("games2")
+        public void command2(TelegramActor actor, String argument) {
+        }
+
+        @Command("games3")
+        public void command3(TelegramActor actor, String argument) {
+        }
+
+        @Command("games4")
+        public void command4(TelegramActor actor, String argument) {
+        }
+
+        @Command("games5")
+        public void command5(TelegramActor actor, String argument) {
+        }
+
+        @Command("games6")
+        public void command6(TelegramActor actor, String argument) {
+        }
+
+        @Command("games7")
+        public void command7(TelegramActor actor, String argument) {
+        }
+
+        @Command("games8")
+        public void command8(TelegramActor actor, String argument) {
+        }
+
+        @Command("games9")
+        public void command9(TelegramActor actor, String argument) {
+        }
+
+        @Command("games10")
+        public void command10(TelegramActor actor, String argument) {
+        }
+
+        @Command("games11")
+        public void command11(TelegramActor actor, String argument) {
+        }
+
+        @Command("games12")
+        public void command12(TelegramActor actor, String argument) {
+        }
+
+        @Command("games13")
+        public void command13(TelegramActor actor, String argument) {
+        }
+
+        @Command("games14")
+        public void command14(TelegramActor actor, String argument) {
+        }
+
+        @Command("games15")
+        public void command15(TelegramActor actor, String argument) {
+        }
+
+        @Command("games16")
+        public void command16(TelegramActor actor, String argument) {
+        }
+
+        @Command("games17")
+        public void command17(TelegramActor actor, String argument) {
+        }
+
+        @Command("games18")
+        public void command18(TelegramActor actor, String argument) {
+        }
+
+        @Command("games19")
+        public void command19(TelegramActor actor, String argument) {
+        }
+    }
+
+    public static class Profile {
+        @Command("profile0")
+        public void command0(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile1")
+        public void command1(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile2")
+        public void command2(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile3")
+        public void command3(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile4")
+        public void command4(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile5")
+        public void command5(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile6")
+        public void command6(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile7")
+        public void command7(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile8")
+        public void command8(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile9")
+        public void command9(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile10")
+        public void command10(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile11")
+        public void command11(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile12")
+        public void command12(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile13")
+        public void command13(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile14")
+        public void command14(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile15")
+        public void command15(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile16")
+        public void command16(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile17")
+        public void command17(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile18")
+        public void command18(TelegramActor actor, String argument) {
+        }
+
+        @Command("profile19")
+        public void command19(TelegramActor actor, String argument) {
+        }
+    }
+}
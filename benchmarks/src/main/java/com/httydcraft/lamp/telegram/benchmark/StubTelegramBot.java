@@ -0,0 +1,41 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+
+/**
+ * TelegramBot answering every request with a canned successful response without any network I/O,
+ * so benchmarks measure the module instead of the Bot API round trip.
+ */
+public class StubTelegramBot extends TelegramBot {
+    /**
+     * One parsed response per response type, responses are immutable once parsed
+     */
+    private final Map<Class<?>, BaseResponse> responses = new ConcurrentHashMap<>();
+
+    public StubTelegramBot() {
+        super("0:benchmark");
+    }
+
+    @Override
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(BaseRequest<T, R> request) {
+        return response(request);
+    }
+
+    @Override
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> void execute(T request, Callback<T, R> callback) {
+        callback.onResponse(request, response(request));
+    }
+
+    @SuppressWarnings("unchecked")
+    private <R extends BaseResponse> R response(BaseRequest<?, R> request) {
+        return (R) responses.computeIfAbsent(request.getResponseType(),
+                type -> BotUtils.fromJson("{\"ok\":true}", request.getResponseType()));
+    }
+}
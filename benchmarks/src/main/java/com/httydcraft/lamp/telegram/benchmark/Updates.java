@@ -0,0 +1,36 @@
+package com.httydcraft.lamp.telegram.benchmark;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * Recorded update payloads used as benchmark input.
+ */
+final class Updates {
+    private Updates() {
+    }
+
+    /**
+     * Creates a text message update as sent by Telegram for a private chat.
+     *
+     * @param text the message text
+     * @return the parsed update
+     */
+    static Update textMessage(String text) {
+        return BotUtils.parseUpdate("{\"update_id\":100000001,\"message\":{\"message_id\":42,"
+                + "\"from\":{\"id\":123456789,\"is_bot\":false,\"first_name\":\"Bench\",\"username\":\"bench\"},"
+                + "\"chat\":{\"id\":123456789,\"first_name\":\"Bench\",\"username\":\"bench\",\"type\":\"private\"},"
+                + "\"date\":1700000000,\"text\":\"" + text + "\"}}");
+    }
+
+    /**
+     * Creates a text message as sent by Telegram for a private chat.
+     *
+     * @param text the message text
+     * @return the parsed message
+     */
+    static Message message(String text) {
+        return textMessage(text).message();
+    }
+}
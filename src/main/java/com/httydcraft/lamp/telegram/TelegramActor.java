@@ -1,8 +1,17 @@
 package com.httydcraft.lamp.telegram;
 
+import java.util.concurrent.CompletableFuture;
+
+import org.jetbrains.annotations.NotNull;
+
 import com.httydcraft.lamp.telegram.core.BaseTelegramActor;
 import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.send.ReplyWriter;
+import com.httydcraft.lamp.telegram.session.TelegramSession;
+import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.User;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
 
 import revxrsal.commands.command.CommandActor;
 
@@ -34,6 +43,16 @@ public interface TelegramActor extends CommandActor {
         return getDispatchSource().getAuthor();
     }
 
+    /**
+     * Gets the bot that received the update of this command and sends its replies.
+     * 
+     * @return the TelegramBot instance
+     * @see TelegramCommandHandler#getBot()
+     */
+    default TelegramBot getBot() {
+        return ((TelegramCommandHandler) getCommandHandler()).getBot();
+    }
+
     /**
      * Gets the dispatch source that triggered this command.
      * 
@@ -42,6 +61,103 @@ public interface TelegramActor extends CommandActor {
      */
     DispatchSource getDispatchSource();
 
+    /**
+     * Sends a reply message without blocking the calling thread. The default implementation sends
+     * the message with the message prefix of the handler to the chat of the dispatch source.
+     * 
+     * @param message the message to send
+     * @return a future of the Telegram response, completed exceptionally if the message could not be sent
+     * @see TelegramCommandHandler#executeAsync(com.pengrad.telegrambot.request.BaseRequest)
+     */
+    default CompletableFuture<SendResponse> replyAsync(@NotNull String message) {
+        TelegramCommandHandler handler = (TelegramCommandHandler) getCommandHandler();
+        return handler.executeAsync(getBot(), new SendMessage(getDispatchSource().getChatIdentficator().asObject(),
+                handler.getMessagePrefix() + message));
+    }
+
+    /**
+     * Sends an error message without blocking the calling thread. The default implementation
+     * sends it like {@link #replyAsync(String)}.
+     * 
+     * @param message the error message to send
+     * @return a future of the Telegram response, completed exceptionally if the message could not be sent
+     */
+    default CompletableFuture<SendResponse> errorAsync(@NotNull String message) {
+        return replyAsync(message);
+    }
+
+    /**
+     * Sets the toast shown to the user once the callback query of this command is answered.
+     * The query is answered automatically after the command finishes, so commands only
+     * call this to show a notification. Does nothing if the command was not triggered by a
+     * callback query. The default implementation does nothing, actors created by the handler
+     * override it.
+     * 
+     * @param text the notification text, 0-200 characters
+     * @param showAlert true to show an alert instead of a notification at the top of the chat screen
+     * @see com.httydcraft.lamp.telegram.core.TelegramHandler#setCallbackAutoAnswer(boolean)
+     */
+    default void answerCallback(@NotNull String text, boolean showAlert) {
+    }
+
+    /**
+     * Sets the notification shown to the user once the callback query of this command is answered.
+     * 
+     * @param text the notification text, 0-200 characters
+     * @see #answerCallback(String, boolean)
+     */
+    default void answerCallback(@NotNull String text) {
+        answerCallback(text, false);
+    }
+
+    /**
+     * Gets the session of this actor, loaded on first use and saved once the command finished.
+     * Commands can declare a {@link TelegramSession} parameter instead. Only actors created by
+     * the handler have a session.
+     * 
+     * @return the session of the user or chat, depending on the session scope
+     * @throws UnsupportedOperationException if the actor has no session
+     * @see com.httydcraft.lamp.telegram.core.TelegramHandler#getSessions()
+     */
+    default TelegramSession getSession() {
+        throw new UnsupportedOperationException(getClass().getName() + " does not support sessions");
+    }
+
+    /**
+     * Opens a writer streaming large output to this actor, split into as many messages as needed
+     * without holding the whole output in memory. Close it to send the rest.
+     * 
+     * @return a new reply writer
+     * @see ReplyWriter
+     */
+    default ReplyWriter replyWriter() {
+        return new ReplyWriter(this);
+    }
+
+    /**
+     * Sends lines produced one by one, e.g. by a lazy stream, packing as many lines into each
+     * message as the message length limit allows.
+     * 
+     * @param lines the lines, iterated once
+     * @see #replyWriter()
+     */
+    default void replyLines(@NotNull Iterable<? extends CharSequence> lines) {
+        try (ReplyWriter writer = replyWriter()) {
+            for (CharSequence line : lines)
+                writer.append(line).append('\n');
+        }
+    }
+
+    /**
+     * Sends the replies buffered so far. Commands streaming output while reply coalescing
+     * is enabled call this to deliver what they produced before the command finishes.
+     * Does nothing if replies are not buffered.
+     * 
+     * @see TelegramCommandHandler#isReplyCoalescing()
+     */
+    default void flush() {
+    }
+
     /**
      * Wraps a dispatch source and command handler into a TelegramActor instance.
      * 
@@ -1,6 +1,12 @@
 package com.httydcraft.lamp.telegram;
 
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+
+import com.pengrad.telegrambot.Callback;
 import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
 
 import revxrsal.commands.CommandHandler;
 
@@ -19,4 +25,84 @@ public interface TelegramCommandHandler extends CommandHandler {
      * @see com.pengrad.telegrambot.TelegramBot
      */
     TelegramBot getBot();
+
+    /**
+     * Checks whether replies of a command are buffered and sent as few messages as possible
+     * once the command finishes.
+     * 
+     * @return true if reply coalescing is enabled
+     * @see TelegramActor#flush()
+     */
+    default boolean isReplyCoalescing() {
+        return false;
+    }
+
+    /**
+     * Executes a Bot API request with the bot of this handler, blocking until the response arrives.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param request the request to execute
+     * @return the response, even if Telegram reported an error
+     * @see #execute(TelegramBot, BaseRequest)
+     */
+    default <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(T request) {
+        return execute(getBot(), request);
+    }
+
+    /**
+     * Executes a Bot API request with the given bot, blocking until the response arrives.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param bot the bot to execute the request with
+     * @param request the request to execute
+     * @return the response, even if Telegram reported an error
+     * @see TelegramBot#execute(BaseRequest)
+     */
+    default <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(TelegramBot bot, T request) {
+        return bot.execute(request);
+    }
+
+    /**
+     * Executes a Bot API request with the bot of this handler without blocking the calling thread.
+     * 
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param request the request to execute
+     * @return a future of the response
+     * @see #executeAsync(TelegramBot, BaseRequest)
+     */
+    default <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> executeAsync(T request) {
+        return executeAsync(getBot(), request);
+    }
+
+    /**
+     * Executes a Bot API request with the given bot without blocking the calling thread.
+     * The returned future is completed on the HTTP client thread, with the response even if
+     * Telegram reported an error, and exceptionally if the request could not be sent.
+     * 
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param bot the bot to execute the request with
+     * @param request the request to execute
+     * @return a future of the response
+     * @see TelegramBot#execute(BaseRequest, Callback)
+     */
+    default <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> executeAsync(TelegramBot bot,
+            T request) {
+        CompletableFuture<R> future = new CompletableFuture<>();
+        bot.execute(request, new Callback<T, R>() {
+            @Override
+            public void onResponse(T request, R response) {
+                future.complete(response);
+            }
+
+            @Override
+            public void onFailure(T request, IOException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
 }
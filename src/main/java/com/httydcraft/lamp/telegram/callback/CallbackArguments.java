@@ -0,0 +1,106 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Reader of the arguments packed into callback data by a {@link CallbackPayload}.
+ * Arguments must be read with the methods matching the ones they were written with, in the same order.
+ *
+ * @see CallbackHandler
+ */
+public final class CallbackArguments {
+    private final byte[] bytes;
+    private int position;
+
+    /**
+     * Creates a reader over a decoded payload.
+     *
+     * @param bytes the decoded payload
+     * @param position the offset of the first argument
+     */
+    CallbackArguments(byte[] bytes, int position) {
+        this.bytes = bytes;
+        this.position = position;
+    }
+
+    /**
+     * Reads a signed integer.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public int readInt() {
+        long value = readLong();
+        if (value != (int) value)
+            throw new IllegalArgumentException("Callback argument is not an int");
+        return (int) value;
+    }
+
+    /**
+     * Reads a signed long.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public long readLong() {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Reads a boolean.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public boolean readBoolean() {
+        return readByte() != 0;
+    }
+
+    /**
+     * Reads a string.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    public String readString() {
+        long length = readVarint();
+        if (length < 0 || length > bytes.length - position)
+            throw new IllegalArgumentException("Callback argument length " + length + " exceeds the payload");
+        String value = new String(bytes, position, (int) length, StandardCharsets.UTF_8);
+        position += (int) length;
+        return value;
+    }
+
+    /**
+     * Checks whether there are arguments left to read.
+     *
+     * @return true if not all arguments were read
+     */
+    public boolean hasRemaining() {
+        return position < bytes.length;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint.
+     *
+     * @return the value
+     * @throws IllegalArgumentException if the payload is malformed
+     */
+    long readVarint() {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return value;
+        }
+        throw new IllegalArgumentException("Malformed callback varint");
+    }
+
+    private int readByte() {
+        if (position >= bytes.length)
+            throw new IllegalArgumentException("Callback payload has no arguments left");
+        return bytes[position++];
+    }
+}
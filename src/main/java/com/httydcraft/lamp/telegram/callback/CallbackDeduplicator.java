@@ -0,0 +1,140 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.pengrad.telegrambot.model.CallbackQuery;
+
+/**
+ * Detects repeated callback queries within a time window, so double-taps on an inline
+ * button and redelivered updates do not run the command twice. A query is a duplicate if
+ * its id, or the same user pressing the same button of the same message, was seen within
+ * the window.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#setCallbackDeduplicator(CallbackDeduplicator)
+ */
+public class CallbackDeduplicator {
+    /**
+     * Default deduplication window in milliseconds
+     */
+    public static final long DEFAULT_WINDOW_MILLIS = 1000;
+
+    /**
+     * Amount of claims between sweeps of expired entries
+     */
+    private static final int SWEEP_INTERVAL = 256;
+
+    /**
+     * The deduplication window in nanoseconds
+     */
+    private final long windowNanos;
+
+    /**
+     * Query ids and button fingerprints mapped to the {@link System#nanoTime()} they expire at
+     */
+    private final Map<Object, Long> seen = new ConcurrentHashMap<>();
+
+    /**
+     * Claims since the last sweep
+     */
+    private final AtomicInteger claims = new AtomicInteger();
+
+    /**
+     * Creates a deduplicator with the {@link #DEFAULT_WINDOW_MILLIS default window}.
+     */
+    public CallbackDeduplicator() {
+        this(DEFAULT_WINDOW_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Creates a deduplicator.
+     *
+     * @param window the deduplication window
+     * @param unit the unit of the window
+     * @throws IllegalArgumentException if window is not positive
+     */
+    public CallbackDeduplicator(long window, TimeUnit unit) {
+        if (window <= 0)
+            throw new IllegalArgumentException("window must be positive");
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Registers a callback query.
+     *
+     * @param query the callback query
+     * @return true if the query is new, false if it is a duplicate within the window
+     */
+    public boolean tryAcquire(CallbackQuery query) {
+        long now = System.nanoTime();
+        if (claims.incrementAndGet() % SWEEP_INTERVAL == 0)
+            seen.values().removeIf(expiry -> expiry - now <= 0);
+        boolean fresh = claim(query.id(), now);
+        if (query.message() != null && query.from() != null)
+            fresh &= claim(new Fingerprint(query), now);
+        return fresh;
+    }
+
+    /**
+     * Gets the amount of tracked query ids and fingerprints, including expired ones not swept yet.
+     *
+     * @return the tracked entry count
+     */
+    public int getTrackedCount() {
+        return seen.size();
+    }
+
+    /**
+     * Claims a key for the window.
+     *
+     * @param key the query id or fingerprint
+     * @param now the current {@link System#nanoTime()}
+     * @return true if the key was not claimed within the window
+     */
+    private boolean claim(Object key, long now) {
+        Long expiry = now + windowNanos;
+        Long previous = seen.putIfAbsent(key, expiry);
+        if (previous == null)
+            return true;
+        return previous - now <= 0 && seen.replace(key, previous, expiry);
+    }
+
+    /**
+     * Identifies a user pressing a button of a message.
+     */
+    private static final class Fingerprint {
+        private final long chatId;
+        private final int messageId;
+        private final long userId;
+        private final String data;
+
+        Fingerprint(CallbackQuery query) {
+            this.chatId = query.message().chat().id();
+            this.messageId = query.message().messageId();
+            this.userId = query.from().id();
+            this.data = query.data();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Fingerprint))
+                return false;
+            Fingerprint other = (Fingerprint) o;
+            return chatId == other.chatId && messageId == other.messageId && userId == other.userId
+                    && Objects.equals(data, other.data);
+        }
+
+        @Override
+        public int hashCode() {
+            int result = Long.hashCode(chatId);
+            result = 31 * result + messageId;
+            result = 31 * result + Long.hashCode(userId);
+            return 31 * result + Objects.hashCode(data);
+        }
+    }
+}
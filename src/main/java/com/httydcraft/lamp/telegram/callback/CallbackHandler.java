@@ -0,0 +1,20 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+
+/**
+ * Handles the presses of inline keyboard buttons routed to it by a {@link CallbackRouter}.
+ *
+ * @see CallbackRouter#register(int, CallbackHandler)
+ */
+@FunctionalInterface
+public interface CallbackHandler {
+    /**
+     * Handles a button press.
+     *
+     * @param actor the actor who pressed the button
+     * @param arguments the arguments packed into the button, read in the order they were written
+     * @throws revxrsal.commands.exception.CommandErrorException to reply with an error message
+     */
+    void handle(TelegramActor actor, CallbackArguments arguments);
+}
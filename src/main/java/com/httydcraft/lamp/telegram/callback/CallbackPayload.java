@@ -0,0 +1,131 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+
+import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
+
+/**
+ * Builder of the compact callback data routed by a {@link CallbackRouter}.
+ * The route id and the arguments are packed as varints and length-prefixed UTF-8 strings,
+ * base64url encoded and prefixed with {@link CallbackRouter#MARKER}. The encoded data must
+ * fit into the 64 bytes Telegram allows, which leaves {@link #MAX_PAYLOAD_SIZE} bytes for the
+ * route id and the arguments.
+ *
+ * @see CallbackRouter#payload(int)
+ * @see CallbackArguments
+ */
+public final class CallbackPayload {
+    /**
+     * Maximum size of the binary payload so that its encoded form fits into 64 bytes
+     */
+    public static final int MAX_PAYLOAD_SIZE = 47;
+
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+
+    private final byte[] bytes = new byte[MAX_PAYLOAD_SIZE];
+    private int size;
+
+    /**
+     * Creates a payload routed to the given route id.
+     *
+     * @param routeId the route id
+     */
+    CallbackPayload(int routeId) {
+        writeVarint(routeId & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Appends a signed integer.
+     *
+     * @param value the value
+     * @return this payload
+     * @throws IllegalArgumentException if the payload exceeds {@link #MAX_PAYLOAD_SIZE}
+     */
+    public CallbackPayload writeInt(int value) {
+        return writeLong(value);
+    }
+
+    /**
+     * Appends a signed long, small absolute values take a single byte.
+     *
+     * @param value the value
+     * @return this payload
+     * @throws IllegalArgumentException if the payload exceeds {@link #MAX_PAYLOAD_SIZE}
+     */
+    public CallbackPayload writeLong(long value) {
+        writeVarint((value << 1) ^ (value >> 63));
+        return this;
+    }
+
+    /**
+     * Appends a boolean.
+     *
+     * @param value the value
+     * @return this payload
+     * @throws IllegalArgumentException if the payload exceeds {@link #MAX_PAYLOAD_SIZE}
+     */
+    public CallbackPayload writeBoolean(boolean value) {
+        writeByte(value ? 1 : 0);
+        return this;
+    }
+
+    /**
+     * Appends a string.
+     *
+     * @param value the value
+     * @return this payload
+     * @throws IllegalArgumentException if the payload exceeds {@link #MAX_PAYLOAD_SIZE}
+     */
+    public CallbackPayload writeString(String value) {
+        byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(utf8.length);
+        ensureRemaining(utf8.length);
+        System.arraycopy(utf8, 0, bytes, size, utf8.length);
+        size += utf8.length;
+        return this;
+    }
+
+    /**
+     * Encodes the payload into callback data.
+     *
+     * @return the callback data, at most 64 bytes long
+     */
+    public String encode() {
+        return CallbackRouter.MARKER + ENCODER.encodeToString(Arrays.copyOf(bytes, size));
+    }
+
+    /**
+     * Creates an inline keyboard button carrying this payload.
+     *
+     * @param text the button label
+     * @return the button
+     */
+    public InlineKeyboardButton toButton(String text) {
+        return new InlineKeyboardButton(text).callbackData(encode());
+    }
+
+    @Override
+    public String toString() {
+        return encode();
+    }
+
+    private void writeVarint(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeByte(int value) {
+        ensureRemaining(1);
+        bytes[size++] = (byte) value;
+    }
+
+    private void ensureRemaining(int count) {
+        if (size + count > MAX_PAYLOAD_SIZE)
+            throw new IllegalArgumentException("Callback payload exceeds " + MAX_PAYLOAD_SIZE + " bytes");
+    }
+}
@@ -0,0 +1,162 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import java.util.Arrays;
+import java.util.Base64;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.dispatch.CallbackQueryDispatchSource;
+
+import revxrsal.commands.exception.CommandErrorException;
+
+/**
+ * Routing table of inline keyboard buttons. Handlers are registered with short numeric ids,
+ * buttons carry the id and their arguments in a compact binary payload instead of a command
+ * line, and presses are handed to the handler directly, bypassing Lamp's tokenizer.
+ * <p>
+ * Callback data not starting with {@link #MARKER} is not routed and dispatched to Lamp as usual.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#getCallbackRouter()
+ * @see CallbackPayload
+ */
+public class CallbackRouter {
+    /**
+     * Prefix of routed callback data, not part of the base64url alphabet
+     */
+    public static final char MARKER = '~';
+
+    /**
+     * Exclusive upper bound of route ids
+     */
+    public static final int MAX_ROUTE_ID = 1 << 16;
+
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    /**
+     * Routes indexed by their id, replaced as a whole on registration
+     */
+    private volatile Route[] routes = new Route[0];
+
+    /**
+     * Registers a handler, replacing the handler previously registered with the id.
+     *
+     * @param id the route id, small ids produce shorter payloads
+     * @param handler the handler
+     * @throws IllegalArgumentException if the id is negative or not below {@link #MAX_ROUTE_ID}
+     */
+    public synchronized void register(int id, CallbackHandler handler) {
+        if (id < 0 || id >= MAX_ROUTE_ID)
+            throw new IllegalArgumentException("Route id must be between 0 and " + (MAX_ROUTE_ID - 1));
+        Route[] current = routes;
+        Route[] updated = Arrays.copyOf(current, Math.max(current.length, id + 1));
+        updated[id] = new Route(id, handler);
+        routes = updated;
+    }
+
+    /**
+     * Unregisters the handler of a route id.
+     *
+     * @param id the route id
+     */
+    public synchronized void unregister(int id) {
+        Route[] current = routes;
+        if (id < 0 || id >= current.length || current[id] == null)
+            return;
+        Route[] updated = current.clone();
+        updated[id] = null;
+        routes = updated;
+    }
+
+    /**
+     * Checks whether a handler is registered with the id.
+     *
+     * @param id the route id
+     * @return true if the route exists
+     */
+    public boolean isRegistered(int id) {
+        return getRoute(id) != null;
+    }
+
+    /**
+     * Creates a payload routed to the given id. Append the arguments and encode it into
+     * callback data or a button.
+     *
+     * @param id the route id
+     * @return a new payload
+     * @throws IllegalArgumentException if no handler is registered with the id
+     */
+    public CallbackPayload payload(int id) {
+        if (!isRegistered(id))
+            throw new IllegalArgumentException("No callback route registered with id " + id);
+        return new CallbackPayload(id);
+    }
+
+    /**
+     * Checks whether callback data was produced by a {@link CallbackPayload}.
+     *
+     * @param data the callback data
+     * @return true if the data is routed
+     */
+    public static boolean isRouted(String data) {
+        return data != null && data.length() > 1 && data.charAt(0) == MARKER;
+    }
+
+    /**
+     * Routes a button press to its handler. Command errors thrown by the handler are sent to the actor.
+     *
+     * @param actor the actor who pressed the button
+     * @param source the callback query
+     * @return the name of the invoked route for metrics, or null if the data is not routed,
+     *         malformed or its route is not registered
+     */
+    public String route(TelegramActor actor, CallbackQueryDispatchSource source) {
+        String data = source.getCallbackQuery().data();
+        if (!isRouted(data))
+            return null;
+        byte[] bytes;
+        try {
+            bytes = DECODER.decode(data.substring(1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        CallbackArguments arguments = new CallbackArguments(bytes, 0);
+        Route route;
+        try {
+            long id = arguments.readVarint();
+            route = id < MAX_ROUTE_ID ? getRoute((int) id) : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (route == null)
+            return null;
+        try {
+            route.handler.handle(actor, arguments);
+        } catch (CommandErrorException e) {
+            actor.error(e.getMessage());
+        }
+        return route.name;
+    }
+
+    /**
+     * Gets the route registered with an id.
+     *
+     * @param id the route id
+     * @return the route, or null if none is registered
+     */
+    private Route getRoute(int id) {
+        Route[] current = routes;
+        return id >= 0 && id < current.length ? current[id] : null;
+    }
+
+    /**
+     * A registered handler together with its precomputed metrics name.
+     */
+    private static final class Route {
+        private final String name;
+        private final CallbackHandler handler;
+
+        Route(int id, CallbackHandler handler) {
+            this.name = "callback#" + id;
+            this.handler = handler;
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+
+/**
+ * Renders the pages of a {@link Paginator} on demand, only the page being shown is rendered.
+ *
+ * @see Paginator
+ */
+@FunctionalInterface
+public interface PageProvider {
+    /**
+     * Renders a page.
+     *
+     * @param actor the actor who requested the page
+     * @param key the key the paginated message was sent with, e.g. the id of the listed entity
+     * @param page the zero-based page index
+     * @return the page text, or null if the page does not exist
+     * @throws revxrsal.commands.exception.CommandErrorException to reply with an error message
+     */
+    String render(TelegramActor actor, long key, int page);
+
+    /**
+     * Gets the amount of pages, used to hide the next button on the last page.
+     *
+     * @param actor the actor who requested the page
+     * @param key the key the paginated message was sent with
+     * @return the amount of pages, or -1 if unknown, in which case the next button is always shown
+     */
+    default int getPageCount(TelegramActor actor, long key) {
+        return -1;
+    }
+}
@@ -0,0 +1,211 @@
+package com.httydcraft.lamp.telegram.callback;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.TelegramCommandHandler;
+import com.httydcraft.lamp.telegram.dispatch.CallbackQueryDispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+import com.httydcraft.lamp.telegram.send.MessageSplitter;
+import com.pengrad.telegrambot.model.CallbackQuery;
+import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.request.InlineKeyboardButton;
+import com.pengrad.telegrambot.model.request.InlineKeyboardMarkup;
+import com.pengrad.telegrambot.request.EditMessageText;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
+
+/**
+ * Paged output with previous and next buttons. Sending renders only the first page, every button
+ * press renders the requested page and edits the message in place, so pages are produced lazily
+ * and nothing is kept between presses. The buttons are routed by a {@link CallbackRouter} and carry
+ * the key and the page index.
+ * <pre>
+ * Paginator scores = new Paginator(handler.getCallbackRouter(), 10,
+ *         (actor, gameId, page) -&gt; renderScores(gameId, page * 20, 20));
+ * scores.send(actor, gameId);
+ * </pre>
+ * Pages longer than a message are cut at the last line break before the limit and a warning is logged,
+ * so providers should keep their pages within {@link MessageSplitter#MAX_MESSAGE_LENGTH}.
+ *
+ * @see PageProvider
+ */
+public class Paginator {
+    /**
+     * The logger of the paginators
+     */
+    private static final Logger LOGGER = Logger.getLogger(Paginator.class.getName());
+
+    /**
+     * The route id of the page buttons
+     */
+    private final int routeId;
+
+    /**
+     * The router the page buttons are routed by
+     */
+    private final CallbackRouter router;
+
+    /**
+     * Renders the pages
+     */
+    private final PageProvider provider;
+
+    /**
+     * Label of the previous page button
+     */
+    private volatile String previousLabel = "< Prev";
+
+    /**
+     * Label of the next page button
+     */
+    private volatile String nextLabel = "Next >";
+
+    /**
+     * Creates a paginator, registering its page buttons with the router.
+     *
+     * @param router the router the page buttons are routed by
+     * @param routeId the route id of the page buttons, replacing the handler registered with it
+     * @param provider renders the pages
+     * @throws IllegalArgumentException if the route id is out of range
+     */
+    public Paginator(CallbackRouter router, int routeId, PageProvider provider) {
+        this.router = router;
+        this.routeId = routeId;
+        this.provider = provider;
+        router.register(routeId, this::turn);
+    }
+
+    /**
+     * Sends the first page to the chat of the actor.
+     *
+     * @param actor the actor
+     * @param key the key passed to the page provider, e.g. the id of the listed entity
+     * @return the response of Telegram
+     * @throws IllegalArgumentException if the provider renders no first page
+     */
+    public SendResponse send(TelegramActor actor, long key) {
+        return send(actor, key, 0);
+    }
+
+    /**
+     * Sends a page to the chat of the actor. Replies buffered before are sent first.
+     *
+     * @param actor the actor
+     * @param key the key passed to the page provider, e.g. the id of the listed entity
+     * @param page the zero-based page index
+     * @return the response of Telegram
+     * @throws IllegalArgumentException if the provider renders no such page
+     * @throws IllegalStateException if the dispatch has no chat, e.g. a callback query of an inline message
+     */
+    public SendResponse send(TelegramActor actor, long key, int page) {
+        Identificator chat = actor.getDispatchSource().getChatIdentficator();
+        if (chat == null)
+            throw new IllegalStateException("The dispatch has no chat to send the page to");
+        String text = page >= 0 ? provider.render(actor, key, page) : null;
+        if (text == null)
+            throw new IllegalArgumentException("Page " + page + " does not exist");
+        TelegramCommandHandler handler = (TelegramCommandHandler) actor.getCommandHandler();
+        SendMessage request = new SendMessage(chat.asObject(), format(handler, key, page, text));
+        InlineKeyboardButton[] buttons = buttons(actor, key, page);
+        if (buttons.length > 0)
+            request.replyMarkup(new InlineKeyboardMarkup(new InlineKeyboardButton[][] { buttons }));
+        actor.flush();
+        return handler.execute(actor.getBot(), request);
+    }
+
+    /**
+     * Gets the route id of the page buttons.
+     *
+     * @return the route id
+     */
+    public int getRouteId() {
+        return routeId;
+    }
+
+    /**
+     * Sets the labels of the page buttons.
+     *
+     * @param previousLabel the label of the previous page button
+     * @param nextLabel the label of the next page button
+     */
+    public void setLabels(String previousLabel, String nextLabel) {
+        this.previousLabel = previousLabel;
+        this.nextLabel = nextLabel;
+    }
+
+    /**
+     * Shows the page a button points to by editing the paginated message. The edit is only queued,
+     * so the dispatch does not wait while the chat is throttled, and failed edits are logged.
+     *
+     * @param actor the actor who pressed the button
+     * @param arguments the key and the page index
+     */
+    private void turn(TelegramActor actor, CallbackArguments arguments) {
+        long key = arguments.readLong();
+        int page = arguments.readInt();
+        String text = page >= 0 ? provider.render(actor, key, page) : null;
+        if (text == null) {
+            actor.answerCallback("No more pages");
+            return;
+        }
+        TelegramCommandHandler handler = (TelegramCommandHandler) actor.getCommandHandler();
+        CallbackQuery query = actor.getDispatchSource().as(CallbackQueryDispatchSource.class).getCallbackQuery();
+        Message message = query.message();
+        String formatted = format(handler, key, page, text);
+        EditMessageText request = message != null
+                ? new EditMessageText(message.chat().id(), message.messageId(), formatted)
+                : new EditMessageText(query.inlineMessageId(), formatted);
+        InlineKeyboardButton[] buttons = buttons(actor, key, page);
+        if (buttons.length > 0)
+            request.replyMarkup(new InlineKeyboardMarkup(new InlineKeyboardButton[][] { buttons }));
+        handler.executeAsync(actor.getBot(), request).whenComplete((response, failure) -> {
+            if (failure != null)
+                LOGGER.log(Level.WARNING, "Failed to show page " + page + " of key " + key, failure);
+            else if (!response.isOk())
+                LOGGER.warning("Failed to show page " + page + " of key " + key + ": " + response.errorCode() + " "
+                        + response.description());
+        });
+    }
+
+    /**
+     * Creates the buttons of a page.
+     *
+     * @param actor the actor the page is shown to
+     * @param key the key of the paginated message
+     * @param page the page index
+     * @return the previous and next buttons the page has, possibly none
+     */
+    private InlineKeyboardButton[] buttons(TelegramActor actor, long key, int page) {
+        int count = provider.getPageCount(actor, key);
+        List<InlineKeyboardButton> buttons = new ArrayList<>(2);
+        if (page > 0)
+            buttons.add(router.payload(routeId).writeLong(key).writeInt(page - 1).toButton(previousLabel));
+        if (count < 0 || page + 1 < count)
+            buttons.add(router.payload(routeId).writeLong(key).writeInt(page + 1).toButton(nextLabel));
+        return buttons.toArray(new InlineKeyboardButton[0]);
+    }
+
+    /**
+     * Prefixes a page with the message prefix of the handler, cutting it to the message length limit and
+     * logging a warning if it does not fit.
+     *
+     * @param handler the handler
+     * @param key the key of the paginated message
+     * @param page the page index
+     * @param text the page text
+     * @return the message text
+     */
+    private static String format(TelegramCommandHandler handler, long key, int page, String text) {
+        String prefix = handler.getMessagePrefix();
+        int limit = MessageSplitter.MAX_MESSAGE_LENGTH - prefix.length();
+        if (text.length() <= limit)
+            return prefix + text;
+        LOGGER.warning("Page " + page + " of key " + key + " has " + text.length()
+                + " characters, more than the " + limit + " a message fits, and was cut");
+        return prefix + MessageSplitter.split(text, limit).get(0);
+    }
+}
@@ -0,0 +1,161 @@
+package com.httydcraft.lamp.telegram.cluster;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.execution.ChatKeys;
+
+/**
+ * Consistent hash ring assigning chats to the worker nodes of a cluster. Every node owns
+ * several points on the ring, a chat belongs to the node owning the first point at or after
+ * the hash of its chat key, so adding or removing a node only moves the chats of that node.
+ * <p>
+ * Chats moving to another node while updates of them are in flight may be handled out of order.
+ *
+ * @see FrontNode
+ * @see ChatKeys#of(DispatchSource)
+ */
+public class ChatPartitioner {
+    /**
+     * Default amount of ring points per node
+     */
+    public static final int DEFAULT_VIRTUAL_NODES = 128;
+
+    /**
+     * Amount of ring points per node
+     */
+    private final int virtualNodes;
+
+    /**
+     * The ring, replaced as a whole when nodes change
+     */
+    private volatile Ring ring;
+
+    /**
+     * Creates a new partitioner with {@link #DEFAULT_VIRTUAL_NODES} ring points per node.
+     *
+     * @param nodes the node ids of the workers
+     */
+    public ChatPartitioner(Collection<String> nodes) {
+        this(nodes, DEFAULT_VIRTUAL_NODES);
+    }
+
+    /**
+     * Creates a new partitioner.
+     *
+     * @param nodes the node ids of the workers
+     * @param virtualNodes the amount of ring points per node, more points spread chats more evenly
+     * @throws IllegalArgumentException if virtualNodes is not positive
+     */
+    public ChatPartitioner(Collection<String> nodes, int virtualNodes) {
+        if (virtualNodes <= 0)
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        this.virtualNodes = virtualNodes;
+        this.ring = new Ring(new LinkedHashSet<>(nodes), virtualNodes);
+    }
+
+    /**
+     * Gets the node a dispatch source belongs to.
+     *
+     * @param source the dispatch source
+     * @return the node id
+     * @throws IllegalStateException if the partitioner has no nodes
+     */
+    public String nodeFor(DispatchSource source) {
+        return nodeFor(ChatKeys.of(source));
+    }
+
+    /**
+     * Gets the node a chat belongs to.
+     *
+     * @param chatKey the chat key
+     * @return the node id
+     * @throws IllegalStateException if the partitioner has no nodes
+     */
+    public String nodeFor(long chatKey) {
+        Ring current = ring;
+        if (current.points.length == 0)
+            throw new IllegalStateException("The partitioner has no nodes");
+        int index = Arrays.binarySearch(current.points, ChatKeys.mix(chatKey));
+        if (index < 0)
+            index = -index - 1;
+        return current.owners[index == current.points.length ? 0 : index];
+    }
+
+    /**
+     * Adds a node to the ring.
+     *
+     * @param node the node id
+     */
+    public synchronized void addNode(String node) {
+        Set<String> nodes = new LinkedHashSet<>(ring.nodes);
+        if (nodes.add(node))
+            ring = new Ring(nodes, virtualNodes);
+    }
+
+    /**
+     * Removes a node from the ring, its chats move to the remaining nodes.
+     *
+     * @param node the node id
+     */
+    public synchronized void removeNode(String node) {
+        Set<String> nodes = new LinkedHashSet<>(ring.nodes);
+        if (nodes.remove(node))
+            ring = new Ring(nodes, virtualNodes);
+    }
+
+    /**
+     * Gets the nodes of the ring.
+     *
+     * @return an unmodifiable set of node ids
+     */
+    public Set<String> getNodes() {
+        return ring.nodes;
+    }
+
+    /**
+     * Hashes a ring point of a node.
+     *
+     * @param node the node id
+     * @param replica the index of the point
+     * @return the position on the ring
+     */
+    private static long hash(String node, int replica) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : node.getBytes(StandardCharsets.UTF_8))
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        return ChatKeys.mix(hash ^ replica * 0x9e3779b97f4a7c15L);
+    }
+
+    /**
+     * Immutable ring points sorted by position, together with their owning nodes.
+     */
+    private static final class Ring {
+        private final Set<String> nodes;
+        private final long[] points;
+        private final String[] owners;
+
+        Ring(Set<String> nodes, int virtualNodes) {
+            this.nodes = Collections.unmodifiableSet(nodes);
+            long[][] entries = new long[nodes.size() * virtualNodes][];
+            String[] ids = nodes.toArray(new String[0]);
+            int i = 0;
+            for (int n = 0; n < ids.length; n++) {
+                for (int replica = 0; replica < virtualNodes; replica++)
+                    entries[i++] = new long[] { hash(ids[n], replica), n };
+            }
+            Arrays.sort(entries, (a, b) -> Long.compare(a[0], b[0]));
+            this.points = new long[entries.length];
+            this.owners = new String[entries.length];
+            for (i = 0; i < entries.length; i++) {
+                points[i] = entries[i][0];
+                owners[i] = ids[(int) entries[i][1]];
+            }
+        }
+    }
+}
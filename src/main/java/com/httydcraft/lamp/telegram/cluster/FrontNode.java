@@ -0,0 +1,114 @@
+package com.httydcraft.lamp.telegram.cluster;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.ingest.UpdateIngestionEngine;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.ChatMemberUpdated;
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * The ingesting node of a partitioned cluster. Telegram delivers the updates of a bot to a single
+ * poller, so the front node polls them and forwards every update to the {@link WorkerNode} owning
+ * its chat, without executing commands itself. Updates of a chat are forwarded in the order they
+ * were received and the batch offset is acknowledged once the workers handled all of its updates.
+ *
+ * @see ChatPartitioner
+ * @see UpdateTransport
+ */
+public class FrontNode implements AutoCloseable {
+    /**
+     * The bot updates are polled with
+     */
+    private final TelegramBot bot;
+
+    /**
+     * The transport updates are forwarded with
+     */
+    private final UpdateTransport transport;
+
+    /**
+     * Assigns chats to worker nodes
+     */
+    private final ChatPartitioner partitioner;
+
+    /**
+     * The long-polling engine feeding this node, null if the node was not started
+     */
+    private UpdateIngestionEngine ingestionEngine;
+
+    /**
+     * Creates a new front node.
+     *
+     * @param bot the bot to poll updates with
+     * @param transport the transport to forward updates with
+     * @param partitioner the partitioner assigning chats to worker nodes
+     */
+    public FrontNode(TelegramBot bot, UpdateTransport transport, ChatPartitioner partitioner) {
+        this.bot = bot;
+        this.transport = transport;
+        this.partitioner = partitioner;
+    }
+
+    /**
+     * Forwards an update to the worker node owning its chat. Membership changes go to the owner
+     * of their chat as well, so its chat member cache stays fresh. Other updates that cannot be
+     * dispatched are dropped. Use it to forward updates received through a webhook.
+     *
+     * @param update the update
+     * @return a future completed once the worker handled the update
+     */
+    public CompletableFuture<Void> forward(Update update) {
+        DispatchSource source = DispatchSource.fromUpdate(update);
+        if (source != null)
+            return transport.send(partitioner.nodeFor(source), update);
+        ChatMemberUpdated member = update.chatMember() != null ? update.chatMember() : update.myChatMember();
+        if (member != null)
+            return transport.send(partitioner.nodeFor(member.chat().id()), update);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Starts long polling updates and forwarding them. Does nothing if polling is already running.
+     *
+     * @return the running ingestion engine
+     */
+    public synchronized UpdateIngestionEngine start() {
+        if (ingestionEngine == null || !ingestionEngine.isRunning()) {
+            ingestionEngine = new UpdateIngestionEngine(bot, this::forward, UpdateIngestionEngine.DEFAULT_BATCH_LIMIT,
+                    UpdateIngestionEngine.DEFAULT_POLL_TIMEOUT);
+            ingestionEngine.start();
+        }
+        return ingestionEngine;
+    }
+
+    /**
+     * Stops polling, waiting for the batch in flight to be handled by the workers.
+     */
+    @Override
+    public synchronized void close() {
+        if (ingestionEngine == null)
+            return;
+        ingestionEngine.close();
+        ingestionEngine = null;
+    }
+
+    /**
+     * Gets the partitioner assigning chats to worker nodes.
+     *
+     * @return the chat partitioner
+     */
+    public ChatPartitioner getPartitioner() {
+        return partitioner;
+    }
+
+    /**
+     * Gets the long-polling engine feeding this node.
+     *
+     * @return the ingestion engine, or null if the node was not started
+     */
+    public UpdateIngestionEngine getIngestionEngine() {
+        return ingestionEngine;
+    }
+}
@@ -0,0 +1,92 @@
+package com.httydcraft.lamp.telegram.cluster;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.httydcraft.lamp.telegram.ingest.UpdateConsumer;
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * In-process transport connecting front and worker nodes of the same JVM, e.g. to run a
+ * partitioned setup on one machine in tests. Updates are handed to the worker on the sending
+ * thread, by default after a round trip through the JSON wire format of the Bot API, so
+ * updates behave as if they were received over the network.
+ *
+ * @see UpdateTransport
+ */
+public class LoopbackTransport implements UpdateTransport {
+    /**
+     * Consumers of the bound workers indexed by node id
+     */
+    private final Map<String, UpdateConsumer> workers = new ConcurrentHashMap<>();
+
+    /**
+     * Whether updates are serialized and parsed again before being handed to the worker
+     */
+    private final boolean serializing;
+
+    /**
+     * Creates a new loopback transport serializing the updates it carries.
+     */
+    public LoopbackTransport() {
+        this(true);
+    }
+
+    /**
+     * Creates a new loopback transport.
+     *
+     * @param serializing true to round trip updates through JSON, false to hand the same instance to the worker
+     */
+    public LoopbackTransport(boolean serializing) {
+        this.serializing = serializing;
+    }
+
+    /**
+     * Binds a worker, replacing the worker previously bound to the node id.
+     *
+     * @param node the node id of the worker
+     * @param consumer the consumer of the updates of the node
+     */
+    @Override
+    public void bind(String node, UpdateConsumer consumer) {
+        workers.put(node, consumer);
+    }
+
+    /**
+     * Unbinds the worker of a node id.
+     *
+     * @param node the node id of the worker
+     */
+    @Override
+    public void unbind(String node) {
+        workers.remove(node);
+    }
+
+    /**
+     * Hands an update to the worker of a node on the calling thread.
+     *
+     * @param node the node id of the receiving worker
+     * @param update the update
+     * @return the future returned by the worker, or a failed future if no worker is bound to the node
+     */
+    @Override
+    public CompletableFuture<Void> send(String node, Update update) {
+        UpdateConsumer worker = workers.get(node);
+        if (worker == null) {
+            CompletableFuture<Void> failed = new CompletableFuture<>();
+            failed.completeExceptionally(new IllegalStateException("No worker bound to node " + node));
+            return failed;
+        }
+        return worker.accept(serializing ? BotUtils.parseUpdate(BotUtils.toJson(update)) : update);
+    }
+
+    /**
+     * Unbinds all workers.
+     */
+    @Override
+    public void close() {
+        workers.clear();
+    }
+}
@@ -0,0 +1,46 @@
+package com.httydcraft.lamp.telegram.cluster;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.httydcraft.lamp.telegram.ingest.UpdateConsumer;
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * Carries updates from a {@link FrontNode} to the {@link WorkerNode}s of a cluster.
+ * Implementations must deliver the updates sent to the same node in the order they were sent,
+ * which together with the chat ordered dispatch of the worker preserves the order of every chat.
+ *
+ * @see LoopbackTransport
+ */
+public interface UpdateTransport extends AutoCloseable {
+    /**
+     * Binds a worker, so updates sent to its node id are handed to the consumer.
+     *
+     * @param node the node id of the worker
+     * @param consumer the consumer of the updates of the node
+     */
+    void bind(String node, UpdateConsumer consumer);
+
+    /**
+     * Unbinds the worker of a node id.
+     *
+     * @param node the node id of the worker
+     */
+    void unbind(String node);
+
+    /**
+     * Sends an update to a node.
+     *
+     * @param node the node id of the receiving worker
+     * @param update the update
+     * @return a future completed once the worker handled the update, or completed exceptionally
+     *         if the update could not be delivered
+     */
+    CompletableFuture<Void> send(String node, Update update);
+
+    /**
+     * Releases the resources of the transport.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,87 @@
+package com.httydcraft.lamp.telegram.cluster;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * A node of a partitioned cluster executing the commands of the chats assigned to it.
+ * Forwarded updates are dispatched on the dispatch executor of the handler, which keeps the
+ * order of every chat as long as the executor is chat ordered. Replies are sent directly by
+ * the bot of the handler, which must use the token of the bot polled by the {@link FrontNode}.
+ *
+ * @see UpdateTransport#bind(String, com.httydcraft.lamp.telegram.ingest.UpdateConsumer)
+ */
+public class WorkerNode implements AutoCloseable {
+    /**
+     * The node id of this worker
+     */
+    private final String id;
+
+    /**
+     * The handler executing the forwarded updates
+     */
+    private final TelegramHandler handler;
+
+    /**
+     * The transport updates are received from
+     */
+    private final UpdateTransport transport;
+
+    /**
+     * Creates a new worker node.
+     *
+     * @param id the node id, as known to the {@link ChatPartitioner} of the front node
+     * @param handler the handler executing the forwarded updates
+     * @param transport the transport to receive updates from
+     */
+    public WorkerNode(String id, TelegramHandler handler, UpdateTransport transport) {
+        this.id = id;
+        this.handler = handler;
+        this.transport = transport;
+    }
+
+    /**
+     * Starts receiving the updates forwarded to this node.
+     */
+    public void start() {
+        transport.bind(id, this::receive);
+    }
+
+    /**
+     * Dispatches a forwarded update.
+     *
+     * @param update the update
+     * @return a future completed once the dispatch finished
+     */
+    private CompletableFuture<Void> receive(Update update) {
+        return handler.dispatchAsync(update);
+    }
+
+    /**
+     * Stops receiving updates. Updates already received keep dispatching.
+     */
+    @Override
+    public void close() {
+        transport.unbind(id);
+    }
+
+    /**
+     * Gets the node id of this worker.
+     *
+     * @return the node id
+     */
+    public String getId() {
+        return id;
+    }
+
+    /**
+     * Gets the handler executing the forwarded updates.
+     *
+     * @return the handler
+     */
+    public TelegramHandler getHandler() {
+        return handler;
+    }
+}
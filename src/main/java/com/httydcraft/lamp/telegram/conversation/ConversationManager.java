@@ -0,0 +1,242 @@
+package com.httydcraft.lamp.telegram.conversation;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.MessageDispatchSource;
+import com.httydcraft.lamp.telegram.execution.ChatKeys;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Message;
+
+import revxrsal.commands.exception.SendableException;
+
+/**
+ * Routes the follow-up messages of multi-step commands. A command awaits the answer of the user
+ * with {@link #await(TelegramActor, ConversationStep)}, the next message of that user in that chat
+ * to the same bot is then handed to the step directly, skipping the pre-filter and Lamp. Messages starting with
+ * '/' are still dispatched as commands, so users can run e.g. {@code /cancel} in the middle of a
+ * conversation.
+ * <p>
+ * Awaiting steps expire after a timeout, swept by a single timer wheel thread.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#getConversations()
+ */
+public class ConversationManager implements AutoCloseable {
+    /**
+     * The logger of the conversation managers
+     */
+    private static final Logger LOGGER = Logger.getLogger(ConversationManager.class.getName());
+
+    /**
+     * Default time a step awaits its answer, in minutes
+     */
+    public static final long DEFAULT_TIMEOUT_MINUTES = 5;
+
+    /**
+     * Awaiting steps indexed by bot, chat and user
+     */
+    private final Map<Key, Awaiting> awaiting = new ConcurrentHashMap<>();
+
+    /**
+     * Expires the awaiting steps
+     */
+    private final TimerWheel timer = new TimerWheel(1, TimeUnit.SECONDS, 512, "telegram-conversation-timer");
+
+    /**
+     * Awaits the next message of the actor in the current chat for {@link #DEFAULT_TIMEOUT_MINUTES} minutes.
+     *
+     * @param actor the actor to await the message of
+     * @param step the step handling the message
+     * @see #await(TelegramActor, ConversationStep, long, TimeUnit, Runnable)
+     */
+    public void await(TelegramActor actor, ConversationStep step) {
+        await(actor, step, DEFAULT_TIMEOUT_MINUTES, TimeUnit.MINUTES, null);
+    }
+
+    /**
+     * Awaits the next message of the actor in the current chat, replacing the step the actor
+     * awaited there before.
+     *
+     * @param actor the actor to await the message of
+     * @param step the step handling the message
+     * @param timeout the time to wait for the message
+     * @param unit the unit of the timeout
+     * @param onTimeout run on the timer thread if no message arrived in time, may be null
+     */
+    public void await(TelegramActor actor, ConversationStep step, long timeout, TimeUnit unit, Runnable onTimeout) {
+        Key key = keyOf(actor);
+        Awaiting next = new Awaiting(key, step, onTimeout);
+        Awaiting previous = awaiting.put(key, next);
+        if (previous != null)
+            previous.claim();
+        timer.schedule(next, timeout, unit);
+    }
+
+    /**
+     * Ends the conversation of the actor in the current chat.
+     *
+     * @param actor the actor
+     * @return true if a step was awaiting a message
+     */
+    public boolean cancel(TelegramActor actor) {
+        Awaiting current = awaiting.remove(keyOf(actor));
+        return current != null && current.claim();
+    }
+
+    /**
+     * Checks whether a step awaits the next message of the actor in the current chat.
+     *
+     * @param actor the actor
+     * @return true if the actor is in a conversation
+     */
+    public boolean isActive(TelegramActor actor) {
+        Awaiting current = awaiting.get(keyOf(actor));
+        return current != null && !current.isDone();
+    }
+
+    /**
+     * Checks whether a message may answer an awaiting step, without allocating.
+     *
+     * @param source the dispatch source
+     * @return true if steps are awaiting and the message is not a command
+     */
+    public boolean accepts(DispatchSource source) {
+        if (awaiting.isEmpty() || !(source instanceof MessageDispatchSource))
+            return false;
+        String text = ((MessageDispatchSource) source).getText();
+        return text == null || !text.startsWith("/");
+    }
+
+    /**
+     * Hands a message to the step awaiting it.
+     *
+     * @param actor the actor who sent the message
+     * @param source the message
+     * @return true if a step handled the message, false if it should be dispatched as a command
+     * @see #claim(TelegramActor)
+     */
+    public boolean handle(TelegramActor actor, MessageDispatchSource source) {
+        ConversationStep step = claim(actor);
+        if (step == null)
+            return false;
+        handle(actor, step, source.getMessage());
+        return true;
+    }
+
+    /**
+     * Ends the conversation of the actor in the current chat, taking the step awaiting its message.
+     *
+     * @param actor the actor who sent the message
+     * @return the step, or null if none awaited the message or it expired
+     */
+    public ConversationStep claim(TelegramActor actor) {
+        Awaiting current = awaiting.remove(keyOf(actor));
+        return current != null && current.claim() ? current.step : null;
+    }
+
+    /**
+     * Runs a claimed step. Errors the step throws are reported to the actor the way Lamp
+     * reports the errors of commands: sendable exceptions are sent, any other exception is
+     * logged and answered with a generic error.
+     *
+     * @param actor the actor who sent the message
+     * @param step the claimed step
+     * @param message the message
+     */
+    public void handle(TelegramActor actor, ConversationStep step, Message message) {
+        try {
+            step.handle(actor, message);
+        } catch (SendableException e) {
+            e.sendTo(actor);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "A conversation step of " + actor.getId() + " failed", e);
+            actor.error("An error has occurred while handling your message.");
+        }
+    }
+
+    /**
+     * Gets the amount of steps awaiting a message.
+     *
+     * @return the amount of active conversations
+     */
+    public int getActiveCount() {
+        return awaiting.size();
+    }
+
+    /**
+     * Stops the timer thread, awaiting steps do not expire anymore.
+     */
+    @Override
+    public void close() {
+        timer.close();
+    }
+
+    /**
+     * Creates the key of the bot, chat and author of the dispatch of an actor. Bots attached to
+     * the same handler keep separate conversations with a user in a shared chat.
+     *
+     * @param actor the actor
+     * @return the key
+     */
+    private static Key keyOf(TelegramActor actor) {
+        DispatchSource source = actor.getDispatchSource();
+        return new Key(actor.getBot(), ChatKeys.of(source), source.getAuthor() != null ? source.getAuthor().id() : 0);
+    }
+
+    /**
+     * Key of a user within a chat of a bot.
+     */
+    private static final class Key {
+        private final TelegramBot bot;
+        private final long chat;
+        private final long user;
+
+        Key(TelegramBot bot, long chat, long user) {
+            this.bot = bot;
+            this.chat = chat;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof Key))
+                return false;
+            Key other = (Key) o;
+            return bot == other.bot && chat == other.chat && user == other.user;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(ChatKeys.mix((chat * 31 + user) * 31 + System.identityHashCode(bot)));
+        }
+    }
+
+    /**
+     * A step awaiting a message, expiring unless it is claimed by a message before its timeout.
+     */
+    private final class Awaiting extends TimerWheel.Timeout {
+        private final Key key;
+        private final ConversationStep step;
+        private final Runnable onTimeout;
+
+        Awaiting(Key key, ConversationStep step, Runnable onTimeout) {
+            this.key = key;
+            this.step = step;
+            this.onTimeout = onTimeout;
+        }
+
+        @Override
+        void expire() {
+            awaiting.remove(key, this);
+            if (onTimeout != null)
+                onTimeout.run();
+        }
+    }
+}
@@ -0,0 +1,23 @@
+package com.httydcraft.lamp.telegram.conversation;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.pengrad.telegrambot.model.Message;
+
+/**
+ * A step of a conversation, receiving the next message of the user in the chat the step
+ * awaits input in. The conversation ends after the step unless it awaits the next step with
+ * {@link ConversationManager#await(TelegramActor, ConversationStep)}.
+ *
+ * @see ConversationManager
+ */
+@FunctionalInterface
+public interface ConversationStep {
+    /**
+     * Handles the message answering this step. Command errors thrown by the step are sent to the actor,
+     * other exceptions are logged and answered with a generic error.
+     *
+     * @param actor the actor who sent the message
+     * @param message the message, which may carry media instead of text
+     */
+    void handle(TelegramActor actor, Message message);
+}
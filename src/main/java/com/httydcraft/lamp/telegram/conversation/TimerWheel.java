@@ -0,0 +1,178 @@
+package com.httydcraft.lamp.telegram.conversation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Hashed timer wheel expiring many timeouts with a single thread. Every timeout is put into
+ * the bucket of the tick it expires at, each tick only visits its own bucket, so scheduling
+ * and cancelling are O(1) regardless of the amount of pending timeouts. Timeouts fire up to
+ * one tick late.
+ */
+final class TimerWheel implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TimerWheel.class.getName());
+
+    /**
+     * Duration of a tick in nanoseconds
+     */
+    private final long tickNanos;
+
+    /**
+     * Buckets indexed by tick modulo the wheel size
+     */
+    private final ConcurrentLinkedQueue<Timeout>[] buckets;
+
+    /**
+     * The {@link System#nanoTime()} the wheel started at
+     */
+    private final long startTime;
+
+    /**
+     * The last tick whose bucket was visited
+     */
+    private volatile long currentTick;
+
+    /**
+     * Name of the ticking thread
+     */
+    private final String threadName;
+
+    /**
+     * The ticking thread, null until the first timeout is scheduled
+     */
+    private Thread thread;
+
+    /**
+     * Whether the ticking thread should keep running
+     */
+    private volatile boolean running = true;
+
+    /**
+     * Creates a new timer wheel.
+     *
+     * @param tick the duration of a tick
+     * @param unit the unit of the tick
+     * @param wheelSize the amount of buckets, timeouts further away wait for several rotations
+     * @param threadName the name of the ticking thread
+     */
+    @SuppressWarnings("unchecked")
+    TimerWheel(long tick, TimeUnit unit, int wheelSize, String threadName) {
+        this.tickNanos = unit.toNanos(tick);
+        this.buckets = new ConcurrentLinkedQueue[wheelSize];
+        for (int i = 0; i < wheelSize; i++)
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        this.startTime = System.nanoTime();
+        this.threadName = threadName;
+    }
+
+    /**
+     * Schedules a timeout, starting the ticking thread on first use.
+     *
+     * @param timeout the timeout
+     * @param delay the delay after which the timeout expires
+     * @param unit the unit of the delay
+     */
+    void schedule(Timeout timeout, long delay, TimeUnit unit) {
+        ensureStarted();
+        long deadlineTick = Math.max(currentTick + 1,
+                (System.nanoTime() - startTime + unit.toNanos(delay) + tickNanos - 1) / tickNanos);
+        timeout.deadlineTick = deadlineTick;
+        buckets[(int) (deadlineTick % buckets.length)].add(timeout);
+    }
+
+    /**
+     * Starts the ticking thread if it is not running yet.
+     */
+    private synchronized void ensureStarted() {
+        if (thread != null || !running)
+            return;
+        thread = new Thread(this::run, threadName);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Advances the wheel every tick and expires the due timeouts of the current bucket.
+     */
+    private void run() {
+        long tick = 0;
+        List<Timeout> pending = new ArrayList<>();
+        while (running) {
+            long sleepNanos = startTime + (tick + 1) * tickNanos - System.nanoTime();
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                continue;
+            }
+            currentTick = ++tick;
+            ConcurrentLinkedQueue<Timeout> bucket = buckets[(int) (tick % buckets.length)];
+            Timeout timeout;
+            while ((timeout = bucket.poll()) != null) {
+                if (timeout.isDone())
+                    continue;
+                if (timeout.deadlineTick > tick) {
+                    pending.add(timeout);
+                    continue;
+                }
+                if (timeout.claim()) {
+                    try {
+                        timeout.expire();
+                    } catch (RuntimeException e) {
+                        LOGGER.log(Level.WARNING, "Timeout handler failed", e);
+                    }
+                }
+            }
+            bucket.addAll(pending);
+            pending.clear();
+        }
+    }
+
+    /**
+     * Stops the ticking thread, pending timeouts never fire.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (thread != null)
+            thread.interrupt();
+    }
+
+    /**
+     * A timeout that either fires or is claimed by whoever completes it first.
+     */
+    abstract static class Timeout {
+        private final AtomicBoolean done = new AtomicBoolean();
+        private volatile long deadlineTick;
+
+        /**
+         * Completes the timeout, so it does not fire anymore.
+         *
+         * @return true if the caller completed it, false if it fired or was completed before
+         */
+        boolean claim() {
+            return done.compareAndSet(false, true);
+        }
+
+        /**
+         * Checks whether the timeout fired or was completed.
+         *
+         * @return true if the timeout is done
+         */
+        boolean isDone() {
+            return done.get();
+        }
+
+        /**
+         * Runs once the timeout fired, on the ticking thread.
+         */
+        abstract void expire();
+    }
+}
@@ -1,17 +1,23 @@
 package com.httydcraft.lamp.telegram.core;
 
 import java.util.UUID;
-import java.util.function.Supplier;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.locks.Lock;
 
 import org.jetbrains.annotations.NotNull;
 
 import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.send.MessageSplitter;
+import com.httydcraft.lamp.telegram.session.TelegramSession;
+import com.pengrad.telegrambot.TelegramBot;
 import com.pengrad.telegrambot.model.User;
 import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.SendResponse;
 import com.httydcraft.lamp.telegram.TelegramActor;
 import com.httydcraft.lamp.telegram.TelegramCommandHandler;
 
 import revxrsal.commands.CommandHandler;
+import revxrsal.commands.command.ExecutableCommand;
 
 /**
  * Base implementation of the TelegramActor interface that handles Telegram command execution.
@@ -23,11 +29,6 @@ import revxrsal.commands.CommandHandler;
  */
 public class BaseTelegramActor implements TelegramActor {
 
-    /**
-     * Memoized supplier for generating a consistent UUID based on the Telegram user ID
-     */
-    private final Supplier<UUID> uuidSupplier = MemoizingSupplier.memoize(() -> new UUID(0, getId()));
-    
     /**
      * The Telegram command handler instance
      */
@@ -38,6 +39,66 @@ public class BaseTelegramActor implements TelegramActor {
      */
     private final DispatchSource dispatchSource;
 
+    /**
+     * The bot that received the update and sends the replies
+     */
+    private final TelegramBot bot;
+
+    /**
+     * Replies buffered during the command execution, null if reply coalescing is disabled
+     */
+    private final StringBuilder replyBuffer;
+
+    /**
+     * UUID derived from the Telegram user ID, computed on first use
+     */
+    private UUID uniqueId;
+
+    /**
+     * The command resolved for this dispatch, null until its conditions are tested
+     */
+    private ExecutableCommand command;
+
+    /**
+     * The {@link System#nanoTime()} the command was resolved at
+     */
+    private long commandResolvedAt;
+
+    /**
+     * Time spent blocked on sending replies, in nanoseconds
+     */
+    private long replyNanos;
+
+    /**
+     * Whether an error was sent to the actor
+     */
+    private boolean failed;
+
+    /**
+     * The toast answering the callback query of this command, null if none was set
+     */
+    private String callbackAnswer;
+
+    /**
+     * Whether the callback answer is shown as an alert
+     */
+    private boolean callbackAlert;
+
+    /**
+     * The session of this actor, null until it is first used
+     */
+    private TelegramSession session;
+
+    /**
+     * The read lock of the command registry held while Lamp resolves the command, null once released
+     */
+    private Lock registryLock;
+
+    /**
+     * The thread holding the registry lock
+     */
+    private Thread registryOwner;
+
     /**
      * Creates a new BaseTelegramActor instance.
      * 
@@ -45,8 +106,21 @@ public class BaseTelegramActor implements TelegramActor {
      * @param dispatchSource the dispatch source that triggered this command
      */
     public BaseTelegramActor(TelegramCommandHandler commandHandler, DispatchSource dispatchSource) {
+        this(commandHandler, dispatchSource, commandHandler.getBot());
+    }
+
+    /**
+     * Creates a new BaseTelegramActor instance for an update received by the given bot.
+     * 
+     * @param commandHandler the Telegram command handler
+     * @param dispatchSource the dispatch source that triggered this command
+     * @param bot the bot that received the update and sends the replies
+     */
+    public BaseTelegramActor(TelegramCommandHandler commandHandler, DispatchSource dispatchSource, TelegramBot bot) {
         this.commandHandler = commandHandler;
         this.dispatchSource = dispatchSource;
+        this.bot = bot;
+        this.replyBuffer = commandHandler.isReplyCoalescing() ? new StringBuilder() : null;
     }
 
     /**
@@ -66,19 +140,64 @@ public class BaseTelegramActor implements TelegramActor {
      */
     @Override
     public @NotNull UUID getUniqueId() {
-        return uuidSupplier.get();
+        UUID id = uniqueId;
+        if (id == null)
+            uniqueId = id = new UUID(0, getId());
+        return id;
     }
 
     /**
      * Sends a reply message to the user/chat that triggered this command.
+     * If reply coalescing is enabled, the message is buffered and sent together with the other
+     * replies of this command on {@link #flush()}.
      * 
      * @param message the message to send
      */
     @Override
     public void reply(@NotNull String message) {
-        SendMessage sendMessage = new SendMessage(dispatchSource.getChatIdentficator().asObject(),
-                commandHandler.getMessagePrefix() + message);
-        commandHandler.getBot().execute(sendMessage);
+        if (replyBuffer == null) {
+            send(createReply(message));
+            return;
+        }
+        synchronized (replyBuffer) {
+            int limit = MessageSplitter.MAX_MESSAGE_LENGTH - commandHandler.getMessagePrefix().length();
+            if (replyBuffer.length() > 0 && replyBuffer.length() + 1 + message.length() > limit)
+                flush();
+            if (replyBuffer.length() > 0)
+                replyBuffer.append('\n');
+            replyBuffer.append(message);
+        }
+    }
+
+    /**
+     * Sends a reply message without blocking the calling thread.
+     * Buffered replies are flushed first to keep the message order.
+     * 
+     * @param message the message to send
+     * @return a future of the Telegram response
+     */
+    @Override
+    public CompletableFuture<SendResponse> replyAsync(@NotNull String message) {
+        flush();
+        return commandHandler.executeAsync(bot, createReply(message));
+    }
+
+    /**
+     * Sends the buffered replies as few messages as the Telegram message length limit allows.
+     * Does nothing if reply coalescing is disabled or nothing was buffered.
+     */
+    @Override
+    public void flush() {
+        if (replyBuffer == null)
+            return;
+        synchronized (replyBuffer) {
+            if (replyBuffer.length() == 0)
+                return;
+            int limit = MessageSplitter.MAX_MESSAGE_LENGTH - commandHandler.getMessagePrefix().length();
+            for (String chunk : MessageSplitter.split(replyBuffer, limit))
+                send(createReply(chunk));
+            replyBuffer.setLength(0);
+        }
     }
 
     /**
@@ -88,9 +207,182 @@ public class BaseTelegramActor implements TelegramActor {
      */
     @Override
     public void error(@NotNull String message) {
+        failed = true;
         reply(message);
     }
 
+    /**
+     * Sends an error message without blocking the calling thread.
+     * 
+     * @param message the error message to send
+     * @return a future of the Telegram response
+     */
+    @Override
+    public CompletableFuture<SendResponse> errorAsync(@NotNull String message) {
+        failed = true;
+        return replyAsync(message);
+    }
+
+    /**
+     * Sets the toast shown to the user once the callback query of this command is answered.
+     * Later calls replace the toast.
+     * 
+     * @param text the notification text
+     * @param showAlert true to show an alert instead of a notification
+     */
+    @Override
+    public void answerCallback(@NotNull String text, boolean showAlert) {
+        callbackAnswer = text;
+        callbackAlert = showAlert;
+    }
+
+    /**
+     * Gets the session of this actor, loading it from the session manager of the handler on first use.
+     * 
+     * @return the session
+     * @throws UnsupportedOperationException if the command handler is not a {@link TelegramHandler}
+     */
+    @Override
+    public TelegramSession getSession() {
+        TelegramSession current = session;
+        if (current == null) {
+            if (!(commandHandler instanceof TelegramHandler))
+                throw new UnsupportedOperationException("Sessions require a TelegramHandler");
+            session = current = ((TelegramHandler) commandHandler).getSessions().load(this);
+        }
+        return current;
+    }
+
+    /**
+     * Gets the session loaded during the command execution.
+     * 
+     * @return the session, or null if the command did not use it
+     */
+    TelegramSession getLoadedSession() {
+        return session;
+    }
+
+    /**
+     * Gets the toast answering the callback query of this command.
+     * 
+     * @return the notification text, or null if none was set
+     */
+    String getCallbackAnswer() {
+        return callbackAnswer;
+    }
+
+    /**
+     * Checks whether the callback answer is shown as an alert.
+     * 
+     * @return true to show an alert
+     */
+    boolean isCallbackAlert() {
+        return callbackAlert;
+    }
+
+    /**
+     * Sends a reply request, accounting the time spent blocked on it to the reply phase.
+     * 
+     * @param request the request to send
+     */
+    private void send(SendMessage request) {
+        long start = System.nanoTime();
+        try {
+            if (commandHandler instanceof TelegramHandler)
+                ((TelegramHandler) commandHandler).sendReply(bot, request);
+            else
+                commandHandler.execute(bot, request);
+        } finally {
+            replyNanos += System.nanoTime() - start;
+        }
+    }
+
+    /**
+     * Marks the command of this dispatch as resolved.
+     * 
+     * @param command the resolved command
+     * @see DispatchTraceCondition
+     */
+    void onCommandResolved(ExecutableCommand command) {
+        if (this.command == null) {
+            this.command = command;
+            this.commandResolvedAt = System.nanoTime();
+        }
+        releaseRegistry();
+    }
+
+    /**
+     * Takes a read lock of the command registry for the resolution of the command, released
+     * once the command is resolved or the dispatch ends.
+     * 
+     * @param lock the read lock
+     */
+    void holdRegistry(Lock lock) {
+        lock.lock();
+        registryLock = lock;
+        registryOwner = Thread.currentThread();
+    }
+
+    /**
+     * Releases the registry lock taken by {@link #holdRegistry(Lock)}. Does nothing if it is
+     * released already or held by another thread.
+     */
+    void releaseRegistry() {
+        Lock lock = registryLock;
+        if (lock != null && registryOwner == Thread.currentThread()) {
+            registryLock = null;
+            registryOwner = null;
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the command resolved for this dispatch.
+     * 
+     * @return the command, or null if none was resolved
+     */
+    ExecutableCommand getResolvedCommand() {
+        return command;
+    }
+
+    /**
+     * Gets the {@link System#nanoTime()} the command was resolved at.
+     * 
+     * @return the resolution time
+     */
+    long getCommandResolvedAt() {
+        return commandResolvedAt;
+    }
+
+    /**
+     * Gets the time spent blocked on sending replies.
+     * 
+     * @return the reply time in nanoseconds
+     */
+    long getReplyNanos() {
+        return replyNanos;
+    }
+
+    /**
+     * Checks whether an error was sent to the actor.
+     * 
+     * @return true if the dispatch failed
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    /**
+     * Creates the request replying with the given message to the chat that triggered this command.
+     * 
+     * @param message the message to send
+     * @return the SendMessage request
+     */
+    protected SendMessage createReply(@NotNull String message) {
+        return new SendMessage(dispatchSource.getChatIdentficator().asObject(),
+                commandHandler.getMessagePrefix() + message);
+    }
+
     /**
      * Gets the command handler associated with this actor.
      * 
@@ -111,6 +403,16 @@ public class BaseTelegramActor implements TelegramActor {
         return dispatchSource.getAuthor();
     }
 
+    /**
+     * Gets the bot that received the update of this command and sends its replies.
+     * 
+     * @return the TelegramBot instance
+     */
+    @Override
+    public TelegramBot getBot() {
+        return bot;
+    }
+
     /**
      * Gets the dispatch source that triggered this command.
      * 
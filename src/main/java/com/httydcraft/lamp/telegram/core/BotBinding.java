@@ -0,0 +1,237 @@
+package com.httydcraft.lamp.telegram.core;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.ingest.UpdateIngestionEngine;
+import com.httydcraft.lamp.telegram.journal.UpdateJournal;
+import com.httydcraft.lamp.telegram.send.SendScheduler;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+
+/**
+ * A bot served by a {@link TelegramHandler}. All bots of a handler share its registered commands,
+ * resolvers and dispatch executor, while every bot keeps its own username, long-polling engine
+ * and send scheduler, so the flood limits of one bot never delay another.
+ *
+ * @see TelegramHandler#attachBot(TelegramBot)
+ * @see TelegramHandler#getBinding(TelegramBot)
+ */
+public final class BotBinding {
+    /**
+     * The handler serving the bot
+     */
+    private final TelegramHandler handler;
+
+    /**
+     * The bound bot
+     */
+    private final TelegramBot bot;
+
+    /**
+     * The scheduler rate limiting outbound messages, null if requests are sent immediately
+     */
+    private volatile SendScheduler sendScheduler;
+
+    /**
+     * The long-polling engine feeding the handler with updates of the bot, null if polling was not started
+     */
+    private volatile UpdateIngestionEngine ingestionEngine;
+
+    /**
+     * The username of the bot without '@', null if unknown
+     */
+    private volatile String username;
+
+    /**
+     * Creates a binding of a bot to a handler.
+     *
+     * @param handler the handler serving the bot
+     * @param bot the bot
+     */
+    BotBinding(TelegramHandler handler, TelegramBot bot) {
+        this.handler = handler;
+        this.bot = bot;
+    }
+
+    /**
+     * Gets the bound bot.
+     *
+     * @return the TelegramBot instance
+     */
+    public TelegramBot getBot() {
+        return bot;
+    }
+
+    /**
+     * Gets the handler serving the bot.
+     *
+     * @return the handler
+     */
+    public TelegramHandler getHandler() {
+        return handler;
+    }
+
+    /**
+     * Executes a Bot API request with the bot, waiting in the send scheduler queue first if the
+     * request is rate limited.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param request the request to execute
+     * @return the response
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(T request) {
+        return handler.execute(bot, request);
+    }
+
+    /**
+     * Executes a Bot API request with the bot without blocking, queueing it in the send scheduler
+     * if the request is rate limited.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param request the request to execute
+     * @return a future of the response
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> executeAsync(T request) {
+        return handler.executeAsync(bot, request);
+    }
+
+    /**
+     * Dispatches a command of the bot on the calling thread.
+     *
+     * @param source the dispatch source to execute
+     * @see TelegramHandler#dispatch(TelegramBot, DispatchSource)
+     */
+    public void dispatch(DispatchSource source) {
+        handler.dispatch(this, source);
+    }
+
+    /**
+     * Dispatches a command of the bot on the dispatch executor of the handler.
+     *
+     * @param source the dispatch source to execute
+     * @return a future completed once the dispatch finished
+     */
+    public CompletableFuture<Void> dispatchAsync(DispatchSource source) {
+        return handler.getDispatchExecutor().execute(source, () -> handler.dispatch(this, source));
+    }
+
+    /**
+     * Dispatches a command of the bot on the dispatch executor of the handler without blocking
+     * the caller if the executor is saturated.
+     *
+     * @param source the dispatch source to execute
+     * @return a future completed once the dispatch finished, completed exceptionally with a
+     *         {@link java.util.concurrent.RejectedExecutionException} right away if it was rejected
+     * @see com.httydcraft.lamp.telegram.execution.DispatchExecutor#tryExecute(DispatchSource, Runnable)
+     */
+    public CompletableFuture<Void> tryDispatchAsync(DispatchSource source) {
+        return handler.getDispatchExecutor().tryExecute(source, () -> handler.dispatch(this, source));
+    }
+
+    /**
+     * Gets the scheduler rate limiting outbound messages of the bot.
+     *
+     * @return the send scheduler, or null if requests are sent immediately
+     */
+    public SendScheduler getSendScheduler() {
+        return sendScheduler;
+    }
+
+    /**
+     * Routes outbound messages of the bot through a send scheduler honoring the Telegram
+     * flood limits. The previous scheduler is closed.
+     *
+     * @param sendScheduler the send scheduler of this bot, or null to send requests immediately
+     * @see SendScheduler
+     */
+    public void setSendScheduler(SendScheduler sendScheduler) {
+        SendScheduler previous;
+        synchronized (this) {
+            previous = this.sendScheduler;
+            this.sendScheduler = sendScheduler;
+        }
+        if (previous != null && previous != sendScheduler)
+            previous.close();
+    }
+
+    /**
+     * Gets the username of the bot.
+     *
+     * @return the username without '@', or null if unknown
+     */
+    public String getUsername() {
+        return username;
+    }
+
+    /**
+     * Sets the username of the bot, so commands addressed to other bots in group chats
+     * (e.g. {@code /start@OtherBot}) are ignored.
+     *
+     * @param username the username with or without '@', or null if unknown
+     * @see com.pengrad.telegrambot.request.GetMe
+     */
+    public void setUsername(String username) {
+        this.username = username != null && username.startsWith("@") ? username.substring(1) : username;
+    }
+
+    /**
+     * Starts long polling updates of the bot and dispatching them on the dispatch executor
+     * of the handler. Does nothing if polling is already running.
+     *
+     * @return the running ingestion engine
+     * @see UpdateIngestionEngine
+     */
+    public UpdateIngestionEngine startPolling() {
+        return startPolling(null);
+    }
+
+    /**
+     * Starts long polling updates of the bot, recording them in a journal before they are dispatched.
+     * Updates journaled but not dispatched before the last shutdown are dispatched first.
+     * Does nothing if polling is already running.
+     *
+     * @param journal the update journal, or null to dispatch updates without journaling them
+     * @return the running ingestion engine
+     * @see UpdateJournal
+     */
+    public synchronized UpdateIngestionEngine startPolling(UpdateJournal journal) {
+        if (ingestionEngine == null || !ingestionEngine.isRunning()) {
+            ingestionEngine = new UpdateIngestionEngine(handler, bot, UpdateIngestionEngine.DEFAULT_BATCH_LIMIT,
+                    UpdateIngestionEngine.DEFAULT_POLL_TIMEOUT);
+            ingestionEngine.setJournal(journal);
+            ingestionEngine.start();
+        }
+        return ingestionEngine;
+    }
+
+    /**
+     * Stops long polling, waiting for in-flight dispatches to finish.
+     */
+    public synchronized void stopPolling() {
+        if (ingestionEngine == null)
+            return;
+        ingestionEngine.close();
+        ingestionEngine = null;
+    }
+
+    /**
+     * Gets the long-polling engine feeding the handler with updates of the bot.
+     *
+     * @return the ingestion engine, or null if polling was not started
+     */
+    public UpdateIngestionEngine getIngestionEngine() {
+        return ingestionEngine;
+    }
+
+    /**
+     * Stops polling and closes the send scheduler of the bot.
+     */
+    void close() {
+        stopPolling();
+        setSendScheduler(null);
+    }
+}
@@ -0,0 +1,144 @@
+package com.httydcraft.lamp.telegram.core;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable trie of the registered command roots, used to drop messages that cannot be
+ * a command before they reach the Lamp tokenizer. Lookups are case-insensitive, walk the
+ * text in place and do not allocate.
+ * <p>
+ * The first word of the text matches if it is a command root, optionally prefixed with
+ * '/' and optionally suffixed with {@code @BotName}. If the bot username is known,
+ * commands addressed to other bots do not match.
+ *
+ * @see TelegramHandler#setBotUsername(String)
+ */
+final class CommandPrefilter {
+    /**
+     * The root node of the trie
+     */
+    private final Node root;
+
+    /**
+     * The amount of registered commands the trie was built from
+     */
+    private final int commandCount;
+
+    /**
+     * Builds a trie of the given command roots.
+     *
+     * @param roots the command roots, including aliases
+     * @param commandCount the amount of registered commands the roots were taken from
+     */
+    CommandPrefilter(Collection<String> roots, int commandCount) {
+        Builder builder = new Builder();
+        for (String root : roots)
+            builder.add(root);
+        this.root = builder.build();
+        this.commandCount = commandCount;
+    }
+
+    /**
+     * Gets the amount of registered commands the trie was built from.
+     *
+     * @return the command count
+     */
+    int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Checks whether the first word of a text may invoke a registered command.
+     *
+     * @param text the execution text
+     * @param botUsername the username of the bot without '@', or null if unknown
+     * @return true if the text starts with a command root
+     */
+    boolean test(String text, String botUsername) {
+        int length = text.length();
+        int start = 0;
+        while (start < length && Character.isWhitespace(text.charAt(start)))
+            start++;
+        int end = start;
+        while (end < length && !Character.isWhitespace(text.charAt(end)))
+            end++;
+        if (start == end)
+            return false;
+        if (contains(text, start, end))
+            return true;
+
+        if (text.charAt(start) == '/')
+            start++;
+        int at = start;
+        while (at < end && text.charAt(at) != '@')
+            at++;
+        if (at < end && botUsername != null && (end - at - 1 != botUsername.length()
+                || !text.regionMatches(true, at + 1, botUsername, 0, botUsername.length())))
+            return false;
+        return at > start && contains(text, start, at);
+    }
+
+    /**
+     * Checks whether a region of a text equals a command root, ignoring case.
+     *
+     * @param text the text
+     * @param start the region start
+     * @param end the exclusive region end
+     * @return true if the region is a command root
+     */
+    private boolean contains(String text, int start, int end) {
+        Node node = root;
+        for (int i = start; i < end && node != null; i++)
+            node = node.child(Character.toLowerCase(text.charAt(i)));
+        return node != null && node.terminal;
+    }
+
+    /**
+     * A frozen trie node with its children sorted by character.
+     */
+    private static final class Node {
+        private final char[] keys;
+        private final Node[] children;
+        private final boolean terminal;
+
+        Node(char[] keys, Node[] children, boolean terminal) {
+            this.keys = keys;
+            this.children = children;
+            this.terminal = terminal;
+        }
+
+        Node child(char c) {
+            int index = Arrays.binarySearch(keys, c);
+            return index < 0 ? null : children[index];
+        }
+    }
+
+    /**
+     * A mutable trie node used while building.
+     */
+    private static final class Builder {
+        private final Map<Character, Builder> children = new TreeMap<>();
+        private boolean terminal;
+
+        void add(String root) {
+            Builder node = this;
+            for (int i = 0; i < root.length(); i++)
+                node = node.children.computeIfAbsent(Character.toLowerCase(root.charAt(i)), c -> new Builder());
+            node.terminal = true;
+        }
+
+        Node build() {
+            char[] keys = new char[children.size()];
+            Node[] nodes = new Node[children.size()];
+            int i = 0;
+            for (Map.Entry<Character, Builder> entry : children.entrySet()) {
+                keys[i] = entry.getKey();
+                nodes[i++] = entry.getValue().build();
+            }
+            return new Node(keys, nodes, terminal);
+        }
+    }
+}
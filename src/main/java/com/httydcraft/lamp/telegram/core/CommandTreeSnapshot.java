@@ -0,0 +1,171 @@
+package com.httydcraft.lamp.telegram.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import com.pengrad.telegrambot.TelegramBot;
+
+import revxrsal.commands.command.CommandPath;
+
+/**
+ * Precomputed index of the command roots every command class registers, so a handler can
+ * defer the reflective scan of a class until one of its commands is invoked for the first time.
+ * <p>
+ * Generate the snapshot at build time, e.g. with the exec-maven-plugin running
+ * {@link #main(String[])}, ship it as a resource and register the commands through
+ * {@link TelegramHandler#registerLazily(CommandTreeSnapshot, Object...)}.
+ * The text format has one {@code className=root1,root2} line per class.
+ *
+ * @see TelegramHandler#registerLazily(CommandTreeSnapshot, Object...)
+ */
+public final class CommandTreeSnapshot {
+    /**
+     * Command roots indexed by the name of the class declaring them
+     */
+    private final Map<String, Set<String>> roots;
+
+    private CommandTreeSnapshot(Map<String, Set<String>> roots) {
+        this.roots = roots;
+    }
+
+    /**
+     * Registers every command instance in a scratch handler and records the roots it added.
+     *
+     * @param commands the command instances, of distinct classes
+     * @return the snapshot
+     */
+    public static CommandTreeSnapshot capture(Object... commands) {
+        Map<String, Set<String>> roots = new TreeMap<>();
+        TelegramHandler handler = new TelegramHandler(new TelegramBot("snapshot"));
+        try {
+            Set<CommandPath> seen = new HashSet<>();
+            for (Object command : commands) {
+                handler.register(command);
+                Set<String> added = new LinkedHashSet<>();
+                for (CommandPath path : handler.getCommands().keySet()) {
+                    if (seen.add(path))
+                        added.add(path.getFirst());
+                }
+                roots.put(command.getClass().getName(), Collections.unmodifiableSet(added));
+            }
+        } finally {
+            handler.unregisterInstance();
+        }
+        return new CommandTreeSnapshot(roots);
+    }
+
+    /**
+     * Reads a snapshot in the text format.
+     *
+     * @param reader the reader, not closed
+     * @return the snapshot
+     * @throws IOException if reading fails
+     * @throws IllegalArgumentException if a line is malformed
+     */
+    public static CommandTreeSnapshot read(Reader reader) throws IOException {
+        Map<String, Set<String>> roots = new TreeMap<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#"))
+                continue;
+            int separator = line.indexOf('=');
+            if (separator <= 0)
+                throw new IllegalArgumentException("Malformed command tree snapshot line: " + line);
+            Set<String> classRoots = new LinkedHashSet<>();
+            for (String root : line.substring(separator + 1).split(",")) {
+                if (!root.isEmpty())
+                    classRoots.add(root);
+            }
+            roots.put(line.substring(0, separator), Collections.unmodifiableSet(classRoots));
+        }
+        return new CommandTreeSnapshot(roots);
+    }
+
+    /**
+     * Loads a snapshot from a class path resource.
+     *
+     * @param classLoader the class loader to load the resource with
+     * @param resource the resource name, e.g. {@code "command-tree.snapshot"}
+     * @return the snapshot, or null if the resource does not exist
+     * @throws UncheckedIOException if reading fails
+     */
+    public static CommandTreeSnapshot load(ClassLoader classLoader, String resource) {
+        try (InputStream in = classLoader.getResourceAsStream(resource)) {
+            return in == null ? null : read(new InputStreamReader(in, StandardCharsets.UTF_8));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Writes the snapshot in the text format.
+     *
+     * @param writer the writer, not closed
+     * @throws IOException if writing fails
+     */
+    public void write(Writer writer) throws IOException {
+        for (Map.Entry<String, Set<String>> entry : roots.entrySet())
+            writer.write(entry.getKey() + "=" + String.join(",", entry.getValue()) + "\n");
+        writer.flush();
+    }
+
+    /**
+     * Gets the command roots a class registers.
+     *
+     * @param commandClass the command class
+     * @return the roots, or null if the class is not part of the snapshot
+     */
+    public Set<String> getRoots(Class<?> commandClass) {
+        return roots.get(commandClass.getName());
+    }
+
+    /**
+     * Gets the names of all classes in the snapshot.
+     *
+     * @return an unmodifiable set of class names
+     */
+    public Set<String> getClassNames() {
+        return Collections.unmodifiableSet(roots.keySet());
+    }
+
+    /**
+     * Generates a snapshot file at build time.
+     * Usage: {@code CommandTreeSnapshot <output file> <command class>...}, the command classes
+     * need a public no-argument constructor.
+     *
+     * @param args the output file followed by the command class names
+     * @throws Exception if a class cannot be instantiated or the file cannot be written
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: CommandTreeSnapshot <output file> <command class>...");
+            System.exit(1);
+        }
+        Object[] commands = new Object[args.length - 1];
+        for (int i = 1; i < args.length; i++)
+            commands[i - 1] = Class.forName(args[i]).getConstructor().newInstance();
+        Path output = Paths.get(args[0]);
+        if (output.getParent() != null)
+            Files.createDirectories(output.getParent());
+        try (Writer writer = Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+            capture(commands).write(writer);
+        }
+    }
+}
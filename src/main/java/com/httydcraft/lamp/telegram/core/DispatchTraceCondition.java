@@ -0,0 +1,39 @@
+package com.httydcraft.lamp.telegram.core;
+
+import java.util.List;
+
+import org.jetbrains.annotations.NotNull;
+
+import revxrsal.commands.command.CommandActor;
+import revxrsal.commands.command.ExecutableCommand;
+import revxrsal.commands.process.CommandCondition;
+
+/**
+ * A condition that never fails, but marks the moment a dispatch resolved its command.
+ * Conditions run after the input was parsed and before arguments are resolved, which is
+ * where the parse phase of the command metrics ends and where the dispatch stops reading
+ * Lamp's command maps, so the read lock of the command registry is released here.
+ * 
+ * Implemented as an enum singleton (INSTANCE).
+ * 
+ * @see com.httydcraft.lamp.telegram.metrics.CommandMetrics
+ */
+enum DispatchTraceCondition implements CommandCondition {
+    /**
+     * The singleton instance of this condition
+     */
+    INSTANCE;
+
+    /**
+     * Records the resolved command on the actor and releases its registry lock.
+     * 
+     * @param actor the command actor
+     * @param command the resolved command
+     * @param arguments the unresolved arguments
+     */
+    @Override
+    public void test(@NotNull CommandActor actor, @NotNull ExecutableCommand command, @NotNull List<String> arguments) {
+        if (actor instanceof BaseTelegramActor)
+            ((BaseTelegramActor) actor).onCommandResolved(command);
+    }
+}
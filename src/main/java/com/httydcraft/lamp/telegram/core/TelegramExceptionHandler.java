@@ -0,0 +1,35 @@
+package com.httydcraft.lamp.telegram.core;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.httydcraft.lamp.telegram.permission.TelegramPermission;
+
+import revxrsal.commands.command.CommandActor;
+import revxrsal.commands.exception.DefaultExceptionHandler;
+import revxrsal.commands.exception.NoPermissionException;
+
+/**
+ * The default exception handler of a {@link TelegramHandler}. Reports errors like Lamp's
+ * {@link DefaultExceptionHandler}, except that an invocation denied only because the member
+ * status of the actor is still loading asks the actor to retry instead of reporting a missing
+ * permission. Custom exception handlers may extend this class to keep that behavior.
+ *
+ * @see TelegramPermission#isPending(CommandActor)
+ */
+public class TelegramExceptionHandler extends DefaultExceptionHandler {
+    /**
+     * Reports a denied invocation.
+     *
+     * @param actor the command actor
+     * @param exception the exception naming the missing permission
+     */
+    @Override
+    public void noPermission(@NotNull CommandActor actor, @NotNull NoPermissionException exception) {
+        if (exception.getPermission() instanceof TelegramPermission
+                && ((TelegramPermission) exception.getPermission()).isPending(actor)) {
+            actor.error("Checking your status in this chat, please try again in a moment.");
+            return;
+        }
+        super.noPermission(actor, exception);
+    }
+}
@@ -1,19 +1,65 @@
 package com.httydcraft.lamp.telegram.core;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.jetbrains.annotations.NotNull;
 
 import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.CallbackQuery;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.AnswerCallbackQuery;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.request.SendMessage;
+import com.pengrad.telegrambot.response.BaseResponse;
+import com.httydcraft.lamp.telegram.TelegramActor;
 import com.httydcraft.lamp.telegram.TelegramCommandHandler;
+import com.httydcraft.lamp.telegram.callback.CallbackDeduplicator;
+import com.httydcraft.lamp.telegram.callback.CallbackRouter;
+import com.httydcraft.lamp.telegram.conversation.ConversationManager;
+import com.httydcraft.lamp.telegram.conversation.ConversationStep;
+import com.httydcraft.lamp.telegram.dispatch.CallbackQueryDispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.MessageDispatchSource;
+import com.httydcraft.lamp.telegram.execution.ChatOrderedExecutor;
+import com.httydcraft.lamp.telegram.execution.DispatchExecutor;
+import com.httydcraft.lamp.telegram.execution.VirtualThreadExecutor;
+import com.httydcraft.lamp.telegram.execution.VirtualThreads;
+import com.httydcraft.lamp.telegram.ingest.UpdateIngestionEngine;
+import com.httydcraft.lamp.telegram.journal.UpdateJournal;
+import com.httydcraft.lamp.telegram.metrics.CommandMetrics;
+import com.httydcraft.lamp.telegram.permission.TelegramPermissionReader;
+import com.httydcraft.lamp.telegram.profile.ChatMemberCache;
+import com.httydcraft.lamp.telegram.send.SendScheduler;
+import com.httydcraft.lamp.telegram.session.SessionManager;
+import com.httydcraft.lamp.telegram.session.TelegramSession;
+import com.httydcraft.lamp.telegram.throttle.ThrottleCondition;
+import com.httydcraft.lamp.telegram.webhook.WebhookServer;
 
+import revxrsal.commands.CommandHandler;
+import revxrsal.commands.command.CommandPath;
+import revxrsal.commands.command.ExecutableCommand;
 import revxrsal.commands.core.BaseCommandHandler;
-import revxrsal.commands.exception.DefaultExceptionHandler;
 
 /**
  * The core implementation of TelegramCommandHandler that manages Telegram bot commands.
  * Handles command registration, execution, and provides access to the TelegramBot instance.
- * Maintains a synchronized list of all active handler instances.
+ * One handler can serve several bots sharing its commands and dispatch executor, see
+ * {@link #attachBot(TelegramBot)}. Maintains a list of all active handler instances.
  * 
  * @see TelegramCommandHandler
  * @see TelegramBot
@@ -23,27 +69,129 @@ public class TelegramHandler extends BaseCommandHandler implements TelegramComma
     /**
      * Thread-safe list of all active TelegramHandler instances
      */
-    private static final List<TelegramHandler> INSTANCES = Collections.synchronizedList(new ArrayList<>());
+    private static final List<TelegramHandler> INSTANCES = new CopyOnWriteArrayList<>();
+
+    /**
+     * Handlers indexed by the bots they serve
+     */
+    private static final Map<TelegramBot, TelegramHandler> HANDLERS = new ConcurrentHashMap<>();
+
+    private static final Logger LOGGER = Logger.getLogger(TelegramHandler.class.getName());
     
     /**
      * The TelegramBot instance associated with this handler
      */
     private final TelegramBot bot;
 
+    /**
+     * The executor running asynchronous dispatches, created on first use
+     */
+    private volatile DispatchExecutor dispatchExecutor;
+
+    /**
+     * The webhook server feeding this handler, null if the webhook was not started
+     */
+    private volatile WebhookServer webhookServer;
+
+    /**
+     * The binding of the bot this handler was created for
+     */
+    private final BotBinding primary;
+
+    /**
+     * Bindings of all bots served by this handler, including the primary bot
+     */
+    private final Map<TelegramBot, BotBinding> bindings = new ConcurrentHashMap<>();
+
+    /**
+     * Whether replies of a command are buffered until the command finishes
+     */
+    private volatile boolean replyCoalescing;
+
+    /**
+     * Invocation counts and latencies of the commands of this handler
+     */
+    private final CommandMetrics metrics = new CommandMetrics();
+
+    /**
+     * Routing table of inline keyboard buttons
+     */
+    private final CallbackRouter callbackRouter = new CallbackRouter();
+
+    /**
+     * Skips callback queries repeated within a short window, null if deduplication is disabled
+     */
+    private volatile CallbackDeduplicator callbackDeduplicator = new CallbackDeduplicator();
+
+    /**
+     * Whether callback queries are answered once their command finished
+     */
+    private volatile boolean callbackAutoAnswer = true;
+
+    /**
+     * Trie of the registered command roots, null until the first dispatch or after registering commands
+     */
+    private volatile CommandPrefilter prefilter;
+
+    /**
+     * Whether texts not starting with a command root are dropped before reaching Lamp
+     */
+    private volatile boolean prefilterEnabled = true;
+
+    /**
+     * Loads and saves the sessions of the actors
+     */
+    private final SessionManager sessions = new SessionManager();
+
+    /**
+     * Routes follow-up messages to the steps of multi-step commands
+     */
+    private final ConversationManager conversations = new ConversationManager();
+
+    /**
+     * Caches the chat memberships of users
+     */
+    private final ChatMemberCache chatMembers = new ChatMemberCache(this);
+
+    /**
+     * Lazily registered commands not registered yet, indexed by their lower case command roots
+     */
+    private final Map<String, List<PendingCommand>> pendingRoots = new ConcurrentHashMap<>();
+
+    /**
+     * Guards the command maps of Lamp, which are not thread-safe: dispatches hold the read lock
+     * while Lamp resolves a command and release it before running it, registrations and
+     * unregistrations hold the write lock
+     */
+    private final ReentrantReadWriteLock registry = new ReentrantReadWriteLock();
+
     /**
      * Creates a new TelegramHandler for the specified bot.
      * Initializes default exception handling and registers required dependencies.
+     * <p>
+     * The bot is registered as the {@code TelegramBot} dependency, so {@code @Dependency} fields
+     * always receive this primary bot, even for updates of bots attached with
+     * {@link #attachBot(TelegramBot)}. Commands serving attached bots must send through
+     * {@link TelegramActor#getBot()} or a {@code TelegramBot} parameter instead.
      * 
      * @param bot the TelegramBot instance to handle commands for
      */
     public TelegramHandler(TelegramBot bot) {
         this.bot = bot;
+        this.primary = new BotBinding(this, bot);
+        bindings.put(bot, primary);
 
-        setExceptionHandler(new DefaultExceptionHandler());
+        setExceptionHandler(new TelegramExceptionHandler());
         registerDependency(TelegramBot.class, bot);
         registerSenderResolver(TelegramSenderResolver.INSTANCE);
+        registerCondition(DispatchTraceCondition.INSTANCE);
+        registerCondition(new ThrottleCondition());
+        registerPermissionReader(new TelegramPermissionReader(chatMembers));
+        registerContextResolver(TelegramBot.class, context -> ((TelegramActor) context.actor()).getBot());
+        registerContextResolver(TelegramSession.class, context -> ((TelegramActor) context.actor()).getSession());
 
         INSTANCES.add(this);
+        HANDLERS.putIfAbsent(bot, this);
     }
 
     /**
@@ -56,6 +204,1013 @@ public class TelegramHandler extends BaseCommandHandler implements TelegramComma
         return bot;
     }
 
+    /**
+     * Serves another bot with the commands, resolvers and dispatch executor of this handler.
+     * The bot gets its own username, polling engine and send scheduler, configured through
+     * the returned binding. Does nothing if the bot is already served by this handler.
+     * <p>
+     * Dependencies are shared with the primary bot: a {@code @Dependency TelegramBot} field holds
+     * the primary bot, so commands must reply through the actor or use {@link TelegramActor#getBot()}
+     * to reach the bot that received the update.
+     * 
+     * @param bot the bot to serve
+     * @return the binding of the bot
+     * @throws IllegalStateException if the bot is served by another handler
+     */
+    public BotBinding attachBot(TelegramBot bot) {
+        TelegramHandler owner = HANDLERS.putIfAbsent(bot, this);
+        if (owner != null && owner != this)
+            throw new IllegalStateException("The bot is already served by another handler");
+        return bindings.computeIfAbsent(bot, b -> new BotBinding(this, b));
+    }
+
+    /**
+     * Stops serving a bot attached with {@link #attachBot(TelegramBot)}, stopping its polling
+     * engine and closing its send scheduler.
+     * 
+     * @param bot the bot to detach
+     * @throws IllegalArgumentException if the bot is the primary bot of this handler
+     */
+    public void detachBot(TelegramBot bot) {
+        if (bot == this.bot)
+            throw new IllegalArgumentException("The primary bot cannot be detached");
+        BotBinding binding = bindings.remove(bot);
+        if (binding == null)
+            return;
+        HANDLERS.remove(bot, this);
+        binding.close();
+    }
+
+    /**
+     * Gets the binding of a bot served by this handler.
+     * 
+     * @param bot the bot
+     * @return the binding, or null if the bot is not served by this handler
+     */
+    public BotBinding getBinding(TelegramBot bot) {
+        return bindings.get(bot);
+    }
+
+    /**
+     * Gets the bindings of all bots served by this handler, including the primary bot.
+     * 
+     * @return an unmodifiable view of the bindings
+     */
+    public Collection<BotBinding> getBindings() {
+        return Collections.unmodifiableCollection(bindings.values());
+    }
+
+    /**
+     * Registers commands and invalidates the command root pre-filter. Waits for the dispatches
+     * resolving a command, as Lamp's command maps must not change while they are read, but not
+     * for running commands, which may register commands themselves.
+     * 
+     * @param commands the command instances or classes to register
+     * @return this handler
+     * @throws IllegalStateException if called while the calling thread resolves a command,
+     *         e.g. from a resolver or an exception handler
+     */
+    @Override
+    public CommandHandler register(Object... commands) {
+        lockRegistry();
+        try {
+            CommandHandler result = super.register(commands);
+            prefilter = null;
+            return result;
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers commands on the first invocation of one of their roots instead of scanning them
+     * now, which speeds up startup with many command classes. The roots of every class are taken
+     * from a snapshot generated at build time, classes missing from it are registered immediately.
+     * 
+     * @param snapshot the command tree snapshot
+     * @param commands the command instances to register
+     * @throws IllegalStateException if called while the calling thread resolves a command
+     * @see CommandTreeSnapshot
+     */
+    public void registerLazily(CommandTreeSnapshot snapshot, Object... commands) {
+        lockRegistry();
+        try {
+            for (Object command : commands) {
+                Set<String> roots = snapshot.getRoots(command.getClass());
+                if (roots == null || roots.isEmpty()) {
+                    LOGGER.warning(command.getClass().getName() + " is missing from the command tree snapshot, "
+                            + "registering it eagerly");
+                    register(command);
+                    continue;
+                }
+                PendingCommand pending = new PendingCommand(command);
+                for (String root : roots)
+                    pendingRoots.computeIfAbsent(root.toLowerCase(Locale.ROOT), r -> new CopyOnWriteArrayList<>())
+                            .add(pending);
+            }
+            prefilter = null;
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers all lazily registered commands that were not invoked yet, e.g. to warm up in the background.
+     * 
+     * @throws IllegalStateException if called while the calling thread resolves a command
+     */
+    public void registerPending() {
+        lockRegistry();
+        try {
+            for (List<PendingCommand> commands : pendingRoots.values())
+                registerAll(commands);
+            pendingRoots.clear();
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregisters a command path and its subcommands, and invalidates the command root pre-filter.
+     * 
+     * @param path the command path
+     * @return true if the path was registered
+     * @throws IllegalStateException if called while the calling thread resolves a command
+     */
+    @Override
+    public boolean unregister(@NotNull CommandPath path) {
+        lockRegistry();
+        try {
+            boolean result = super.unregister(path);
+            prefilter = null;
+            return result;
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregisters a space separated command path and its subcommands, and invalidates the
+     * command root pre-filter.
+     * 
+     * @param commandPath the command path
+     * @return true if the path was registered
+     * @throws IllegalStateException if called while the calling thread resolves a command
+     */
+    @Override
+    public boolean unregister(@NotNull String commandPath) {
+        lockRegistry();
+        try {
+            boolean result = super.unregister(commandPath);
+            prefilter = null;
+            return result;
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Unregisters all commands, including lazily registered commands not registered yet, and
+     * invalidates the command root pre-filter.
+     * 
+     * @throws IllegalStateException if called while the calling thread resolves a command
+     */
+    @Override
+    public void unregisterAllCommands() {
+        lockRegistry();
+        try {
+            super.unregisterAllCommands();
+            pendingRoots.clear();
+            prefilter = null;
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Takes the write lock of the command registry, waiting for the dispatches resolving a
+     * command to release their read locks. Reentrant for nested registrations.
+     * 
+     * @throws IllegalStateException if the calling thread resolves a command, since the read
+     *         lock it holds cannot be upgraded
+     */
+    private void lockRegistry() {
+        if (registry.getReadHoldCount() > 0)
+            throw new IllegalStateException("Commands cannot be registered while a command is resolved");
+        registry.writeLock().lock();
+    }
+
+    /**
+     * Registers the lazily registered commands of the root the execution text starts with.
+     * Concurrent dispatches of the same root wait until the registration finished.
+     * 
+     * @param executionText the execution text
+     */
+    private void registerPending(String executionText) {
+        int start = 0;
+        while (start < executionText.length() && Character.isWhitespace(executionText.charAt(start)))
+            start++;
+        int end = start;
+        while (end < executionText.length() && !Character.isWhitespace(executionText.charAt(end)))
+            end++;
+        String token = executionText.substring(start, end).toLowerCase(Locale.ROOT);
+        String root = token;
+        List<PendingCommand> pending = pendingRoots.get(root);
+        if (pending == null) {
+            int at = token.indexOf('@');
+            root = token.substring(token.startsWith("/") ? 1 : 0, at < 0 ? token.length() : at);
+            pending = pendingRoots.get(root);
+            if (pending == null)
+                return;
+        }
+        lockRegistry();
+        try {
+            registerAll(pending);
+            pendingRoots.remove(root);
+        } finally {
+            registry.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Registers lazily registered commands not registered yet.
+     * 
+     * @param commands the pending commands
+     */
+    private void registerAll(List<PendingCommand> commands) {
+        for (PendingCommand pending : commands) {
+            if (!pending.registered) {
+                register(pending.command);
+                pending.registered = true;
+            }
+        }
+    }
+
+    /**
+     * Removes this handler from the active instances.
+     */
+    void unregisterInstance() {
+        INSTANCES.remove(this);
+        for (TelegramBot served : bindings.keySet())
+            HANDLERS.remove(served, this);
+    }
+
+    /**
+     * Executes a Bot API request with the given bot, waiting in the send scheduler queue of the
+     * bot first if the request is rate limited.
+     * <p>
+     * Waiting for the scheduler blocks the calling thread for as long as the chat or the bot is
+     * throttled, which stalls every chat sharing the dispatch shard when called from a command.
+     * Commands should use {@link TelegramActor#replyAsync(String)} or
+     * {@link #executeAsync(TelegramBot, BaseRequest)} instead.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param bot the bot to execute the request with
+     * @param request the request to execute
+     * @return the response
+     */
+    @Override
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> R execute(TelegramBot bot, T request) {
+        SendScheduler scheduler = getSendScheduler(bot);
+        if (scheduler == null || !SendScheduler.isRateLimited(request))
+            return TelegramCommandHandler.super.execute(bot, request);
+        try {
+            return scheduler.submit(request).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            throw new RuntimeException(e.getCause());
+        }
+    }
+
+    /**
+     * Executes a Bot API request with the given bot without blocking, queueing it in the send
+     * scheduler of the bot if the request is rate limited.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param bot the bot to execute the request with
+     * @param request the request to execute
+     * @return a future of the response
+     */
+    @Override
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> executeAsync(TelegramBot bot,
+            T request) {
+        SendScheduler scheduler = getSendScheduler(bot);
+        if (scheduler == null || !SendScheduler.isRateLimited(request))
+            return TelegramCommandHandler.super.executeAsync(bot, request);
+        return scheduler.submit(request);
+    }
+
+    /**
+     * Sends a reply of a dispatch. Replies of bots with a send scheduler are only queued, as
+     * waiting for them would block the dispatch shard while the chat is throttled.
+     *
+     * @param bot the bot sending the reply
+     * @param request the reply to send
+     */
+    void sendReply(TelegramBot bot, SendMessage request) {
+        if (getSendScheduler(bot) == null || !SendScheduler.isRateLimited(request)) {
+            execute(bot, request);
+            return;
+        }
+        executeAsync(bot, request).exceptionally(t -> {
+            LOGGER.log(Level.WARNING, "Failed to send a reply to chat " + request.getParameters().get("chat_id"), t);
+            return null;
+        });
+    }
+
+    /**
+     * Gets the send scheduler of a bot.
+     *
+     * @param bot the bot
+     * @return the send scheduler, or null if the bot is not attached or sends requests immediately
+     */
+    private SendScheduler getSendScheduler(TelegramBot bot) {
+        BotBinding binding = bot == this.bot ? primary : bindings.get(bot);
+        return binding == null ? null : binding.getSendScheduler();
+    }
+
+    /**
+     * Gets the scheduler rate limiting outbound messages of the primary bot.
+     *
+     * @return the send scheduler, or null if requests are sent immediately
+     */
+    public SendScheduler getSendScheduler() {
+        return primary.getSendScheduler();
+    }
+
+    /**
+     * Routes outbound messages of the primary bot through a send scheduler honoring the Telegram
+     * flood limits. The previous scheduler is closed. Attached bots have their own scheduler,
+     * see {@link BotBinding#setSendScheduler(SendScheduler)}.
+     *
+     * @param sendScheduler the send scheduler, or null to send requests immediately
+     * @see SendScheduler
+     */
+    public void setSendScheduler(SendScheduler sendScheduler) {
+        primary.setSendScheduler(sendScheduler);
+    }
+
+    /**
+     * Dispatches a command from the given source, using its execution text as command input.
+     * Sources without execution text (e.g. stickers or photos without caption) are ignored.
+     * Commands addressed to another bot and, unless the pre-filter is disabled, texts not
+     * starting with a registered command root are ignored as well. The invocation is recorded
+     * in the {@link #getMetrics() command metrics}.
+     * <p>
+     * Messages answering a step of a multi-step command are handed to the awaiting step instead.
+     * Callback queries repeated within the deduplication window are not executed again, and
+     * every callback query is answered once the command finished, unless disabled.
+     * 
+     * @param source the dispatch source to execute
+     * @see #setPrefilterEnabled(boolean)
+     * @see #setCallbackAutoAnswer(boolean)
+     */
+    public void dispatch(DispatchSource source) {
+        dispatch(primary, source);
+    }
+
+    /**
+     * Dispatches a command received by an attached bot, replying with that bot.
+     * 
+     * @param bot the bot that received the update
+     * @param source the dispatch source to execute
+     * @throws IllegalArgumentException if the bot is not served by this handler
+     * @see #dispatch(DispatchSource)
+     */
+    public void dispatch(TelegramBot bot, DispatchSource source) {
+        dispatch(requireBinding(bot), source);
+    }
+
+    /**
+     * Dispatches a command received by a bot of this handler.
+     * 
+     * @param binding the binding of the bot that received the update
+     * @param source the dispatch source to execute
+     */
+    void dispatch(BotBinding binding, DispatchSource source) {
+        if (source instanceof CallbackQueryDispatchSource)
+            dispatchCallback(binding, (CallbackQueryDispatchSource) source);
+        else
+            dispatchCommand(binding, source);
+    }
+
+    /**
+     * Gets the binding of a bot served by this handler.
+     * 
+     * @param bot the bot
+     * @return the binding
+     * @throws IllegalArgumentException if the bot is not served by this handler
+     */
+    private BotBinding requireBinding(TelegramBot bot) {
+        BotBinding binding = bot == this.bot ? primary : bindings.get(bot);
+        if (binding == null)
+            throw new IllegalArgumentException("The bot is not attached to this handler");
+        return binding;
+    }
+
+    /**
+     * Dispatches the execution text of a source to Lamp.
+     * 
+     * @param binding the binding of the bot that received the update
+     * @param source the dispatch source to execute
+     * @return the actor of the dispatch, or null if the source was ignored
+     */
+    private BaseTelegramActor dispatchCommand(BotBinding binding, DispatchSource source) {
+        if (conversations.accepts(source)) {
+            BaseTelegramActor actor = dispatchConversation(binding, (MessageDispatchSource) source);
+            if (actor != null)
+                return actor;
+        }
+        String executionText = source.getExecutionText();
+        if (executionText == null)
+            return null;
+        String username = binding.getUsername();
+        if (username != null && source instanceof MessageDispatchSource) {
+            String addressee = ((MessageDispatchSource) source).getCommandAddressee();
+            if (addressee != null && !addressee.equalsIgnoreCase(username))
+                return null;
+        }
+        if (prefilterEnabled && !testPrefilter(executionText, username))
+            return null;
+        if (!pendingRoots.isEmpty() && registry.getReadHoldCount() == 0)
+            registerPending(executionText);
+        long start = System.nanoTime();
+        BaseTelegramActor actor = new BaseTelegramActor(this, source, binding.getBot());
+        try {
+            actor.holdRegistry(registry.readLock());
+            try {
+                dispatch(actor, executionText);
+            } finally {
+                actor.releaseRegistry();
+            }
+        } finally {
+            flushReplies(actor);
+            recordMetrics(actor, start, System.nanoTime());
+            saveSession(actor);
+        }
+        return actor;
+    }
+
+    /**
+     * Tests an execution text against the command root pre-filter, excluding concurrent registrations.
+     * 
+     * @param executionText the execution text
+     * @param username the username of the bot, or null if unknown
+     * @return true if the text may start with a command
+     */
+    private boolean testPrefilter(String executionText, String username) {
+        registry.readLock().lock();
+        try {
+            return getPrefilter().test(executionText, username);
+        } finally {
+            registry.readLock().unlock();
+        }
+    }
+
+    /**
+     * Hands a message to the conversation step awaiting it, bypassing the pre-filter and Lamp.
+     * 
+     * @param binding the binding of the bot that received the update
+     * @param source the message
+     * @return the actor of the dispatch, or null if no step awaited the message
+     */
+    private BaseTelegramActor dispatchConversation(BotBinding binding, MessageDispatchSource source) {
+        long start = System.nanoTime();
+        BaseTelegramActor actor = new BaseTelegramActor(this, source, binding.getBot());
+        ConversationStep step = conversations.claim(actor);
+        if (step == null)
+            return null;
+        try {
+            conversations.handle(actor, step, source.getMessage());
+        } finally {
+            flushReplies(actor);
+            long replyNanos = actor.getReplyNanos();
+            metrics.record("conversation", 0, System.nanoTime() - start - replyNanos, replyNanos, actor.isFailed());
+            saveSession(actor);
+        }
+        return actor;
+    }
+
+    /**
+     * Dispatches a callback query to the callback router or Lamp, skipping duplicates, and answers it.
+     * 
+     * @param binding the binding of the bot that received the update
+     * @param source the callback query to execute
+     */
+    private void dispatchCallback(BotBinding binding, CallbackQueryDispatchSource source) {
+        CallbackQuery query = source.getCallbackQuery();
+        CallbackDeduplicator deduplicator = callbackDeduplicator;
+        BaseTelegramActor actor = null;
+        try {
+            if (deduplicator == null || deduplicator.tryAcquire(query))
+                actor = CallbackRouter.isRouted(query.data()) ? dispatchRoute(binding, source)
+                        : dispatchCommand(binding, source);
+        } finally {
+            if (callbackAutoAnswer)
+                answerCallback(binding, query, actor);
+        }
+    }
+
+    /**
+     * Hands a button press to the callback router, bypassing Lamp.
+     * 
+     * @param binding the binding of the bot that received the update
+     * @param source the callback query carrying routed data
+     * @return the actor of the dispatch
+     */
+    private BaseTelegramActor dispatchRoute(BotBinding binding, CallbackQueryDispatchSource source) {
+        long start = System.nanoTime();
+        BaseTelegramActor actor = new BaseTelegramActor(this, source, binding.getBot());
+        String route = null;
+        try {
+            route = callbackRouter.route(actor, source);
+        } finally {
+            flushReplies(actor);
+            long replyNanos = actor.getReplyNanos();
+            if (route == null)
+                metrics.recordUnknown();
+            else
+                metrics.record(route, 0, System.nanoTime() - start - replyNanos, replyNanos, actor.isFailed());
+            saveSession(actor);
+        }
+        return actor;
+    }
+
+    /**
+     * Sends the buffered replies of a finished dispatch. Failures are logged instead of thrown,
+     * so they neither replace an exception of the command nor skip the metrics and the session.
+     * 
+     * @param actor the actor of the dispatch
+     */
+    private void flushReplies(BaseTelegramActor actor) {
+        try {
+            actor.flush();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to send the replies of a dispatch", e);
+        }
+    }
+
+    /**
+     * Saves the session of a finished dispatch if the command used it.
+     * 
+     * @param actor the actor of the dispatch
+     */
+    private void saveSession(BaseTelegramActor actor) {
+        TelegramSession session = actor.getLoadedSession();
+        if (session == null)
+            return;
+        try {
+            sessions.save(actor, session);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Failed to save the session of " + actor.getId(), e);
+        }
+    }
+
+    /**
+     * Gets the manager routing the follow-up messages of multi-step commands to their awaiting steps.
+     * 
+     * @return the conversation manager
+     * @see ConversationManager#await(TelegramActor, com.httydcraft.lamp.telegram.conversation.ConversationStep)
+     */
+    public ConversationManager getConversations() {
+        return conversations;
+    }
+
+    /**
+     * Gets the read-through cache of chat memberships and administrators, also used by
+     * {@link com.httydcraft.lamp.telegram.profile.RequireStatus} and
+     * {@link com.httydcraft.lamp.telegram.permission.RequireAdmin}.
+     * 
+     * @return the chat member cache
+     */
+    public ChatMemberCache getChatMembers() {
+        return chatMembers;
+    }
+
+    /**
+     * Gets the manager loading and saving the sessions of the actors, e.g. to configure the
+     * session store or scope.
+     * 
+     * @return the session manager
+     * @see TelegramSession
+     */
+    public SessionManager getSessions() {
+        return sessions;
+    }
+
+    /**
+     * Answers a callback query without blocking, with the toast set by the command if any.
+     * The Bot API answers one query per request, so answers are not batched.
+     * 
+     * @param binding the binding of the bot that received the query
+     * @param query the callback query
+     * @param actor the actor of the dispatch, or null if the query was not executed
+     */
+    private void answerCallback(BotBinding binding, CallbackQuery query, BaseTelegramActor actor) {
+        AnswerCallbackQuery answer = new AnswerCallbackQuery(query.id());
+        if (actor != null && actor.getCallbackAnswer() != null)
+            answer.text(actor.getCallbackAnswer()).showAlert(actor.isCallbackAlert());
+        binding.executeAsync(answer).exceptionally(t -> {
+            LOGGER.log(Level.FINE, "Failed to answer callback query " + query.id(), t);
+            return null;
+        });
+    }
+
+    /**
+     * Checks whether callback queries are answered automatically once their command finished.
+     * 
+     * @return true if callback queries are answered automatically
+     */
+    public boolean isCallbackAutoAnswer() {
+        return callbackAutoAnswer;
+    }
+
+    /**
+     * Enables or disables answering callback queries automatically once their command finished,
+     * with the toast set through {@link TelegramActor#answerCallback(String, boolean)}.
+     * Enabled by default. Disable it if commands answer callback queries themselves.
+     * 
+     * @param callbackAutoAnswer true to answer callback queries automatically
+     */
+    public void setCallbackAutoAnswer(boolean callbackAutoAnswer) {
+        this.callbackAutoAnswer = callbackAutoAnswer;
+    }
+
+    /**
+     * Gets the deduplicator skipping repeated callback queries.
+     * 
+     * @return the callback deduplicator, or null if deduplication is disabled
+     */
+    public CallbackDeduplicator getCallbackDeduplicator() {
+        return callbackDeduplicator;
+    }
+
+    /**
+     * Replaces the deduplicator skipping repeated callback queries, e.g. to change the window.
+     * 
+     * @param callbackDeduplicator the callback deduplicator, or null to disable deduplication
+     */
+    public void setCallbackDeduplicator(CallbackDeduplicator callbackDeduplicator) {
+        this.callbackDeduplicator = callbackDeduplicator;
+    }
+
+    /**
+     * Gets the routing table of inline keyboard buttons. Callback queries carrying data of a
+     * {@link com.httydcraft.lamp.telegram.callback.CallbackPayload} are handed to the registered
+     * handler instead of being parsed as a command.
+     * 
+     * @return the callback router
+     */
+    public CallbackRouter getCallbackRouter() {
+        return callbackRouter;
+    }
+
+    /**
+     * Records the phase latencies of a finished dispatch.
+     * 
+     * @param actor the actor of the dispatch
+     * @param start the {@link System#nanoTime()} the dispatch started at
+     * @param end the {@link System#nanoTime()} the dispatch finished at
+     */
+    private void recordMetrics(BaseTelegramActor actor, long start, long end) {
+        ExecutableCommand command = actor.getResolvedCommand();
+        if (command == null) {
+            metrics.recordUnknown();
+            return;
+        }
+        long resolvedAt = actor.getCommandResolvedAt();
+        long replyNanos = actor.getReplyNanos();
+        metrics.record(command.getPath().toRealString(), resolvedAt - start, end - resolvedAt - replyNanos, replyNanos,
+                actor.isFailed());
+    }
+
+    /**
+     * Gets the invocation counts, error counts and parse, execute and reply latencies of the
+     * commands dispatched by this handler.
+     * 
+     * @return the command metrics
+     * @see CommandMetrics#snapshot()
+     */
+    public CommandMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Gets the trie of the registered command roots, rebuilding it if commands were
+     * registered or unregistered since it was built. Requires the read lock of the registry.
+     * 
+     * @return the command pre-filter
+     */
+    private CommandPrefilter getPrefilter() {
+        CommandPrefilter current = prefilter;
+        Map<CommandPath, ExecutableCommand> commands = getCommands();
+        if (current == null || current.getCommandCount() != commands.size()) {
+            Set<String> roots = new HashSet<>(pendingRoots.keySet());
+            for (CommandPath path : commands.keySet())
+                roots.add(path.getFirst());
+            prefilter = current = new CommandPrefilter(roots, commands.size());
+        }
+        return current;
+    }
+
+    /**
+     * Checks whether texts not starting with a registered command root are dropped before
+     * reaching the Lamp tokenizer.
+     * 
+     * @return true if the pre-filter is enabled
+     */
+    public boolean isPrefilterEnabled() {
+        return prefilterEnabled;
+    }
+
+    /**
+     * Enables or disables dropping texts not starting with a registered command root (optionally
+     * prefixed with '/' and suffixed with {@code @BotName}) before they reach the Lamp tokenizer.
+     * Enabled by default. Disable it to let the exception handler report unknown commands.
+     * 
+     * @param prefilterEnabled true to enable the pre-filter
+     */
+    public void setPrefilterEnabled(boolean prefilterEnabled) {
+        this.prefilterEnabled = prefilterEnabled;
+    }
+
+    /**
+     * Gets the username of the primary bot.
+     * 
+     * @return the username without '@', or null if unknown
+     */
+    public String getBotUsername() {
+        return primary.getUsername();
+    }
+
+    /**
+     * Sets the username of the primary bot, so commands addressed to other bots in group chats
+     * (e.g. {@code /start@OtherBot}) are ignored.
+     * 
+     * @param botUsername the username with or without '@', or null if unknown
+     * @see com.pengrad.telegrambot.request.GetMe
+     */
+    public void setBotUsername(String botUsername) {
+        primary.setUsername(botUsername);
+    }
+
+    /**
+     * Checks whether replies of a command are buffered and sent as few messages as possible
+     * once the command finishes.
+     *
+     * @return true if reply coalescing is enabled
+     */
+    @Override
+    public boolean isReplyCoalescing() {
+        return replyCoalescing;
+    }
+
+    /**
+     * Enables or disables buffering the replies of a command and sending them as few messages
+     * as possible once the command finishes. Commands streaming output can deliver earlier
+     * with {@link TelegramActor#flush()}.
+     *
+     * @param replyCoalescing true to enable reply coalescing
+     */
+    public void setReplyCoalescing(boolean replyCoalescing) {
+        this.replyCoalescing = replyCoalescing;
+    }
+
+    /**
+     * Dispatches a command from the given source on the dispatch executor of this handler.
+     * 
+     * @param source the dispatch source to execute
+     * @return a future completed once the dispatch finished
+     * @see #getDispatchExecutor()
+     */
+    public CompletableFuture<Void> dispatchAsync(DispatchSource source) {
+        return primary.dispatchAsync(source);
+    }
+
+    /**
+     * Dispatches a raw update received by the primary bot on the dispatch executor of this handler.
+     * 
+     * @param update the update
+     * @return a future completed once the dispatch finished
+     * @see #dispatchAsync(TelegramBot, Update)
+     */
+    public CompletableFuture<Void> dispatchAsync(Update update) {
+        return dispatchAsync(bot, update);
+    }
+
+    /**
+     * Dispatches a raw update received by a bot of this handler on the dispatch executor of this
+     * handler. Membership changes refresh the {@link #getChatMembers() chat member cache},
+     * updates without dispatch source are ignored otherwise.
+     * 
+     * @param bot the bot that received the update
+     * @param update the update
+     * @return a future completed once the dispatch finished
+     * @throws IllegalArgumentException if the bot is not served by this handler
+     */
+    public CompletableFuture<Void> dispatchAsync(TelegramBot bot, Update update) {
+        DispatchSource source = prepare(update);
+        return source == null ? CompletableFuture.completedFuture(null) : dispatchAsync(bot, source);
+    }
+
+    /**
+     * Dispatches a raw update like {@link #dispatchAsync(TelegramBot, Update)}, but never blocks
+     * the caller if the dispatch executor is saturated. Meant for I/O threads like the selector
+     * of the webhook server, which answer a rejection with a retryable error instead.
+     * 
+     * @param bot the bot that received the update
+     * @param update the update
+     * @return a future completed once the dispatch finished, completed exceptionally with a
+     *         {@link java.util.concurrent.RejectedExecutionException} right away if it was rejected
+     * @throws IllegalArgumentException if the bot is not served by this handler
+     * @see DispatchExecutor#tryExecute(DispatchSource, Runnable)
+     */
+    public CompletableFuture<Void> tryDispatchAsync(TelegramBot bot, Update update) {
+        DispatchSource source = prepare(update);
+        return source == null ? CompletableFuture.completedFuture(null) : requireBinding(bot).tryDispatchAsync(source);
+    }
+
+    /**
+     * Feeds membership changes of an update into the chat member cache.
+     * 
+     * @param update the update
+     * @return the dispatch source of the update, or null if it has none
+     */
+    private DispatchSource prepare(Update update) {
+        if (update.chatMember() != null)
+            chatMembers.onChatMemberUpdated(update.chatMember());
+        if (update.myChatMember() != null)
+            chatMembers.onChatMemberUpdated(update.myChatMember());
+        return DispatchSource.fromUpdate(update);
+    }
+
+    /**
+     * Dispatches a command received by an attached bot on the dispatch executor of this handler.
+     * 
+     * @param bot the bot that received the update
+     * @param source the dispatch source to execute
+     * @return a future completed once the dispatch finished
+     * @throws IllegalArgumentException if the bot is not served by this handler
+     */
+    public CompletableFuture<Void> dispatchAsync(TelegramBot bot, DispatchSource source) {
+        return requireBinding(bot).dispatchAsync(source);
+    }
+
+    /**
+     * Gets the executor running asynchronous dispatches. Defaults to a {@link ChatOrderedExecutor},
+     * which runs commands of the same chat in order and commands of different chats in parallel.
+     * 
+     * @return the dispatch executor
+     */
+    public DispatchExecutor getDispatchExecutor() {
+        DispatchExecutor executor = dispatchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = dispatchExecutor;
+                if (executor == null)
+                    dispatchExecutor = executor = new ChatOrderedExecutor();
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Replaces the executor running asynchronous dispatches. The previous executor is closed.
+     * 
+     * @param dispatchExecutor the new dispatch executor
+     */
+    public void setDispatchExecutor(DispatchExecutor dispatchExecutor) {
+        DispatchExecutor previous;
+        synchronized (this) {
+            previous = this.dispatchExecutor;
+            this.dispatchExecutor = dispatchExecutor;
+        }
+        if (previous != null && previous != dispatchExecutor)
+            previous.close();
+    }
+
+    /**
+     * Switches this handler to run every dispatch on its own virtual thread, keeping
+     * dispatches of the same chat in order. Requires Java 21 or newer.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not supported by the running JVM
+     * @see VirtualThreadExecutor
+     */
+    public void enableVirtualThreads() {
+        if (!VirtualThreads.isSupported())
+            throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+        setDispatchExecutor(new VirtualThreadExecutor());
+    }
+
+    /**
+     * Starts long polling updates of the primary bot and dispatching them on the dispatch executor
+     * of this handler. Does nothing if polling is already running.
+     * 
+     * @return the running ingestion engine
+     * @see UpdateIngestionEngine
+     * @see BotBinding#startPolling()
+     */
+    public UpdateIngestionEngine startPolling() {
+        return primary.startPolling();
+    }
+
+    /**
+     * Starts long polling updates of the primary bot, recording them in a journal before they are
+     * dispatched, so updates interrupted by a crash are dispatched on the next start.
+     * Does nothing if polling is already running.
+     * 
+     * @param journal the update journal, or null to dispatch updates without journaling them
+     * @return the running ingestion engine
+     * @see UpdateJournal
+     */
+    public UpdateIngestionEngine startPolling(UpdateJournal journal) {
+        return primary.startPolling(journal);
+    }
+
+    /**
+     * Stops long polling the primary bot, waiting for in-flight dispatches to finish.
+     */
+    public void stopPolling() {
+        primary.stopPolling();
+    }
+
+    /**
+     * Gets the long-polling engine feeding this handler with updates of the primary bot.
+     * 
+     * @return the ingestion engine, or null if polling was not started
+     */
+    public UpdateIngestionEngine getIngestionEngine() {
+        return primary.getIngestionEngine();
+    }
+
+    /**
+     * Gets the handler serving a bot.
+     * 
+     * @param bot the bot
+     * @return the handler, or null if the bot is not served by any handler
+     */
+    public static TelegramHandler forBot(TelegramBot bot) {
+        return HANDLERS.get(bot);
+    }
+
+    /**
+     * Starts an embedded webhook server on all interfaces, dispatching the updates Telegram
+     * posts to it on the dispatch executor of this handler. Register the public HTTPS URL
+     * proxying to it with {@link com.pengrad.telegrambot.request.SetWebhook}.
+     * 
+     * @param port the port to listen on, 0 picks a free port
+     * @param path the request path updates are posted to, e.g. {@code "/telegram"}
+     * @param secretToken the secret token configured with setWebhook, or null to accept any request
+     * @return the running webhook server
+     * @throws IOException if the port cannot be bound
+     * @see WebhookServer
+     */
+    public WebhookServer startWebhook(int port, String path, String secretToken) throws IOException {
+        return startWebhook(new InetSocketAddress(port), path, secretToken);
+    }
+
+    /**
+     * Starts an embedded webhook server, dispatching the updates Telegram posts to it on the
+     * dispatch executor of this handler. A running webhook server is closed first.
+     * 
+     * @param address the address to listen on
+     * @param path the request path updates are posted to, e.g. {@code "/telegram"}
+     * @param secretToken the secret token configured with setWebhook, or null to accept any request
+     * @return the running webhook server
+     * @throws IOException if the address cannot be bound
+     * @see WebhookServer
+     */
+    public synchronized WebhookServer startWebhook(InetSocketAddress address, String path, String secretToken)
+            throws IOException {
+        stopWebhook();
+        WebhookServer server = new WebhookServer(this, address, path, secretToken);
+        server.start();
+        webhookServer = server;
+        return server;
+    }
+
+    /**
+     * Stops the webhook server. Updates already received keep dispatching.
+     */
+    public synchronized void stopWebhook() {
+        if (webhookServer == null)
+            return;
+        webhookServer.close();
+        webhookServer = null;
+    }
+
+    /**
+     * Gets the webhook server feeding this handler.
+     * 
+     * @return the webhook server, or null if the webhook was not started
+     */
+    public WebhookServer getWebhookServer() {
+        return webhookServer;
+    }
+
     /**
      * Gets an unmodifiable list of all active TelegramHandler instances.
      * 
@@ -64,4 +1219,16 @@ public class TelegramHandler extends BaseCommandHandler implements TelegramComma
     public static List<TelegramHandler> getInstances() {
         return Collections.unmodifiableList(INSTANCES);
     }
+
+    /**
+     * A lazily registered command instance.
+     */
+    private static final class PendingCommand {
+        private final Object command;
+        private boolean registered;
+
+        PendingCommand(Object command) {
+            this.command = command;
+        }
+    }
 }
@@ -2,6 +2,7 @@ package com.httydcraft.lamp.telegram.dispatch;
 
 import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
 import com.pengrad.telegrambot.model.CallbackQuery;
+import com.pengrad.telegrambot.model.Chat;
 import com.pengrad.telegrambot.model.User;
 
 /**
@@ -17,6 +18,16 @@ public class CallbackQueryDispatchSource implements DispatchSource {
      */
     private final CallbackQuery callbackQuery;
 
+    /**
+     * The chat identificator, created on first use
+     */
+    private Identificator chatIdentificator;
+
+    /**
+     * The callback query identificator, created on first use
+     */
+    private Identificator sourceIdentificator;
+
     /**
      * Creates a new dispatch source from a Telegram callback query.
      * 
@@ -64,7 +75,10 @@ public class CallbackQueryDispatchSource implements DispatchSource {
      */
     @Override
     public Identificator getSourceIdentificator() {
-        return Identificator.of(callbackQuery.id());
+        Identificator identificator = sourceIdentificator;
+        if (identificator == null)
+            sourceIdentificator = identificator = Identificator.of(callbackQuery.id());
+        return identificator;
     }
 
     /**
@@ -74,9 +88,20 @@ public class CallbackQueryDispatchSource implements DispatchSource {
      */
     @Override
     public Identificator getChatIdentficator() {
-        if (callbackQuery.message() != null)
-            return Identificator.of(callbackQuery.message().chat().id());
-        return null;
+        Identificator identificator = chatIdentificator;
+        if (identificator == null && callbackQuery.message() != null)
+            chatIdentificator = identificator = Identificator.of(callbackQuery.message().chat().id());
+        return identificator;
+    }
+
+    /**
+     * Gets the type of the chat of the message the callback query belongs to.
+     * 
+     * @return the chat type, or null if the message is an inline message
+     */
+    @Override
+    public Chat.Type getChatType() {
+        return callbackQuery.message() != null ? callbackQuery.message().chat().type() : null;
     }
 
     /**
@@ -1,6 +1,8 @@
 package com.httydcraft.lamp.telegram.dispatch;
 
 import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+import com.pengrad.telegrambot.model.Chat;
+import com.pengrad.telegrambot.model.Update;
 import com.pengrad.telegrambot.model.User;
 
 /**
@@ -32,6 +34,15 @@ public interface DispatchSource {
      */
     Identificator getChatIdentficator();
 
+    /**
+     * Gets the type of the chat where this dispatch originated.
+     * 
+     * @return the chat type, or null if the source has no chat (e.g. callbacks of inline messages)
+     */
+    default Chat.Type getChatType() {
+        return null;
+    }
+
     /**
      * Gets the source identificator of this dispatch.
      * 
@@ -57,4 +68,19 @@ public interface DispatchSource {
     default <T extends DispatchSource> T as(Class<T> clazz) {
         return clazz.cast(this);
     }
+
+    /**
+     * Creates a dispatch source from a Telegram update.
+     * Messages and callback queries are supported, other update kinds are ignored.
+     *
+     * @param update the Telegram update
+     * @return an appropriate DispatchSource implementation, or null if the update is not dispatchable
+     */
+    static DispatchSource fromUpdate(Update update) {
+        if (update.message() != null)
+            return new MessageDispatchSource(update.message());
+        if (update.callbackQuery() != null)
+            return new CallbackQueryDispatchSource(update.callbackQuery());
+        return null;
+    }
 }
@@ -1,7 +1,11 @@
 package com.httydcraft.lamp.telegram.dispatch;
 
+import static revxrsal.commands.util.Preconditions.notNull;
+
 import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+import com.pengrad.telegrambot.model.Chat;
 import com.pengrad.telegrambot.model.Message;
+import com.pengrad.telegrambot.model.MessageEntity;
 import com.pengrad.telegrambot.model.User;
 
 /**
@@ -16,11 +20,31 @@ public class MessageDispatchSource implements DispatchSource {
      * The underlying Telegram message
      */
     private final Message message;
-    
+
+    /**
+     * The chat identificator, created on first use
+     */
+    private Identificator chatIdentificator;
+
+    /**
+     * The message identificator, created on first use
+     */
+    private Identificator sourceIdentificator;
+
     /**
-     * The processed message text (either text content or caption)
+     * The normalized command line, computed on first use
      */
-    private String messageText;
+    private String executionText;
+
+    /**
+     * The bot username a leading command was addressed to, computed with the execution text
+     */
+    private String commandAddressee;
+
+    /**
+     * Whether the execution text was computed already
+     */
+    private boolean normalized;
 
     /**
      * Creates a new dispatch source from a Telegram message.
@@ -29,31 +53,78 @@ public class MessageDispatchSource implements DispatchSource {
      * @throws NullPointerException if message is null
      */
     public MessageDispatchSource(Message message) {
-        this.message = message;
-        if(message.text()!=null)
-            messageText = message.text();
-        if(message.caption()!=null)
-            messageText = message.caption();
+        this.message = notNull(message, "message");
     }
 
     /**
-     * Gets the message text or caption.
+     * Gets the message text or caption, the caption takes precedence.
      * 
-     * @return the message content
+     * @return the message content, or null if the message has neither
      */
     @Override
     public String getText() {
-        return messageText;
+        String caption = message.caption();
+        return caption != null ? caption : message.text();
     }
 
     /**
-     * Gets the message text to be used for command execution.
+     * Gets the message text to be used for command execution. If the message starts with a
+     * {@code bot_command} entity, the leading '/' and the {@code @BotName} suffix of the command
+     * are stripped, so {@code "/start@MyBot arg"} is executed as {@code "start arg"}.
+     * Other messages are executed as they are. The result is computed once and cached.
      * 
-     * @return the execution text
+     * @return the execution text, or null if the message has neither text nor caption
+     * @see #getCommandAddressee()
      */
     @Override
     public String getExecutionText() {
-        return getText();
+        if (!normalized)
+            normalize();
+        return executionText;
+    }
+
+    /**
+     * Gets the bot username the leading command of the message was addressed to, e.g.
+     * {@code "MyBot"} for {@code "/start@MyBot"}.
+     * 
+     * @return the addressed bot username, or null if the command was not addressed to a bot
+     */
+    public String getCommandAddressee() {
+        if (!normalized)
+            normalize();
+        return commandAddressee;
+    }
+
+    /**
+     * Computes the execution text and command addressee from the leading bot_command entity.
+     */
+    private void normalize() {
+        String caption = message.caption();
+        String text = caption != null ? caption : message.text();
+        MessageEntity[] entities = caption != null ? message.captionEntities() : message.entities();
+        MessageEntity command = null;
+        if (text != null && entities != null) {
+            for (MessageEntity entity : entities) {
+                if (entity.type() == MessageEntity.Type.bot_command && entity.offset() == 0) {
+                    command = entity;
+                    break;
+                }
+            }
+        }
+        if (command == null || command.length() == null || command.length() < 2 || text.charAt(0) != '/'
+                || command.length() > text.length()) {
+            executionText = text;
+        } else {
+            int end = command.length();
+            int at = text.indexOf('@', 1);
+            if (at > 0 && at < end) {
+                commandAddressee = text.substring(at + 1, end);
+                executionText = text.substring(1, at) + text.substring(end);
+            } else {
+                executionText = text.substring(1);
+            }
+        }
+        normalized = true;
     }
 
     /**
@@ -73,7 +144,10 @@ public class MessageDispatchSource implements DispatchSource {
      */
     @Override
     public Identificator getSourceIdentificator() {
-        return Identificator.of(message.messageId());
+        Identificator identificator = sourceIdentificator;
+        if (identificator == null)
+            sourceIdentificator = identificator = Identificator.of(message.messageId());
+        return identificator;
     }
 
     /**
@@ -83,7 +157,20 @@ public class MessageDispatchSource implements DispatchSource {
      */
     @Override
     public Identificator getChatIdentficator() {
-        return Identificator.of(message.chat().id());
+        Identificator identificator = chatIdentificator;
+        if (identificator == null)
+            chatIdentificator = identificator = Identificator.of(message.chat().id());
+        return identificator;
+    }
+
+    /**
+     * Gets the type of the chat where the message was sent.
+     * 
+     * @return the chat type
+     */
+    @Override
+    public Chat.Type getChatType() {
+        return message.chat().type();
     }
 
     /**
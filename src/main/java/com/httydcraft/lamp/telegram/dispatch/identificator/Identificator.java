@@ -3,7 +3,8 @@ package com.httydcraft.lamp.telegram.dispatch.identificator;
 /**
  * Represents a polymorphic identifier that can be either a Long or String value.
  * Provides conversion methods between different representations and factory methods
- * for creating appropriate implementations.
+ * for creating appropriate implementations. Implementations define {@code equals} and
+ * {@code hashCode}, so identificators can be used as map keys.
  * 
  * @see LongIdentificator
  * @see StringIdentificator
@@ -68,7 +69,7 @@ public interface Identificator {
      */
     static Identificator fromObject(Object object) {
         if (object instanceof Long)
-            return new LongIdentificator((Long) object);
+            return of((Long) object);
         if (object instanceof Integer)
             return new LongIdentificator((Integer) object);
         if (object instanceof String)
@@ -86,6 +87,18 @@ public interface Identificator {
         return new LongIdentificator(id);
     }
 
+    /**
+     * Creates a long-based identificator reusing an already boxed value,
+     * so {@link #asObject()} does not box it again.
+     * 
+     * @param id the boxed long value
+     * @return a LongIdentificator instance
+     * @throws NullPointerException if id is null
+     */
+    static Identificator of(Long id) {
+        return new LongIdentificator(id);
+    }
+
     /**
      * Creates a string-based identificator.
      * 
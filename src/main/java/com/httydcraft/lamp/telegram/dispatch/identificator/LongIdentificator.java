@@ -12,6 +12,11 @@ public class LongIdentificator implements Identificator {
      */
     private final long identificator;
 
+    /**
+     * The boxed value returned by {@link #asObject()}, created on first use
+     */
+    private Long boxed;
+
     /**
      * Creates a new long-based identificator.
      * 
@@ -21,6 +26,18 @@ public class LongIdentificator implements Identificator {
         this.identificator = identificator;
     }
 
+    /**
+     * Creates a new long-based identificator reusing an already boxed value,
+     * e.g. the ids returned by Telegram model objects.
+     * 
+     * @param identificator the boxed long value
+     * @throws NullPointerException if identificator is null
+     */
+    public LongIdentificator(Long identificator) {
+        this.identificator = identificator;
+        this.boxed = identificator;
+    }
+
     /**
      * Gets the identificator value as a long.
      * 
@@ -40,4 +57,36 @@ public class LongIdentificator implements Identificator {
     public boolean isLong() {
         return true;
     }
+
+    /**
+     * Gets the identificator value as a Long, boxing it at most once per instance.
+     * 
+     * @return the boxed long value
+     */
+    @Override
+    public Object asObject() {
+        Long value = boxed;
+        if (value == null)
+            boxed = value = identificator;
+        return value;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof LongIdentificator))
+            return false;
+        return identificator == ((LongIdentificator) obj).identificator;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(identificator);
+    }
+
+    @Override
+    public String toString() {
+        return Long.toString(identificator);
+    }
 }
@@ -41,4 +41,33 @@ public class StringIdentificator implements Identificator {
     public boolean isString() {
         return true;
     }
+
+    /**
+     * Gets the identificator value as an Object without any conversion.
+     * 
+     * @return the string value
+     */
+    @Override
+    public Object asObject() {
+        return identificator;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (!(obj instanceof StringIdentificator))
+            return false;
+        return identificator.equals(((StringIdentificator) obj).identificator);
+    }
+
+    @Override
+    public int hashCode() {
+        return identificator.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return identificator;
+    }
 }
@@ -0,0 +1,42 @@
+package com.httydcraft.lamp.telegram.execution;
+
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+
+/**
+ * Resolves the ordering key of dispatch sources for the chat aware executors and partitioners.
+ */
+public final class ChatKeys {
+    private ChatKeys() {
+    }
+
+    /**
+     * Resolves the chat key of a dispatch source. Sources without a chat are keyed by their author.
+     *
+     * @param source the dispatch source
+     * @return the ordering key
+     */
+    public static long of(DispatchSource source) {
+        Identificator chat = source.getChatIdentficator();
+        if (chat != null && chat.isLong())
+            return chat.asLong();
+        if (chat != null && chat.isString())
+            return chat.asString().hashCode();
+        if (source.getAuthor() != null)
+            return source.getAuthor().id();
+        return 0;
+    }
+
+    /**
+     * Spreads sequential ids (e.g. negative group ids) evenly across shards.
+     *
+     * @param key the chat key
+     * @return the mixed key
+     */
+    public static long mix(long key) {
+        key ^= key >>> 33;
+        key *= 0xff51afd7ed558ccdL;
+        key ^= key >>> 33;
+        return key;
+    }
+}
@@ -0,0 +1,282 @@
+package com.httydcraft.lamp.telegram.execution;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+
+/**
+ * Dispatch executor that keeps dispatches of the same chat in order while dispatches of
+ * different chats run in parallel. Every chat is pinned to one of a fixed amount of shards,
+ * each shard runs its tasks sequentially on its own thread from a bounded queue.
+ * Submitting to a full shard blocks the caller by default, which propagates backpressure to
+ * the update source, or rejects the task with {@link OverflowPolicy#REJECT}.
+ * {@link #tryExecute(DispatchSource, Runnable)} never blocks.
+ *
+ * @see DispatchExecutor
+ * @see ShardStats
+ */
+public class ChatOrderedExecutor implements DispatchExecutor {
+    /**
+     * Default capacity of a single shard queue
+     */
+    public static final int DEFAULT_SHARD_CAPACITY = 1024;
+
+    /**
+     * Marker task telling a shard thread to exit
+     */
+    private static final Runnable POISON = () -> {
+    };
+
+    /**
+     * The shards, indexed by chat hash
+     */
+    private final Shard[] shards;
+
+    /**
+     * What happens to tasks submitted to a full shard
+     */
+    private final OverflowPolicy overflowPolicy;
+
+    /**
+     * Whether new tasks are still accepted
+     */
+    private volatile boolean open = true;
+
+    /**
+     * Creates an executor with two shards per available processor and default shard capacity.
+     */
+    public ChatOrderedExecutor() {
+        this(Runtime.getRuntime().availableProcessors() * 2, DEFAULT_SHARD_CAPACITY);
+    }
+
+    /**
+     * Creates a new chat ordered executor blocking submitters of full shards.
+     *
+     * @param shardCount the amount of shards, which is the maximum parallelism
+     * @param shardCapacity the amount of tasks a shard may queue before submitters block
+     * @throws IllegalArgumentException if any argument is not positive
+     */
+    public ChatOrderedExecutor(int shardCount, int shardCapacity) {
+        this(shardCount, shardCapacity, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates a new chat ordered executor.
+     *
+     * @param shardCount the amount of shards, which is the maximum parallelism
+     * @param shardCapacity the amount of tasks a shard may queue
+     * @param overflowPolicy what happens to tasks submitted to a full shard
+     * @throws IllegalArgumentException if any numeric argument is not positive
+     */
+    public ChatOrderedExecutor(int shardCount, int shardCapacity, OverflowPolicy overflowPolicy) {
+        if (shardCount < 1)
+            throw new IllegalArgumentException("shardCount must be positive");
+        if (shardCapacity < 1)
+            throw new IllegalArgumentException("shardCapacity must be positive");
+        this.overflowPolicy = overflowPolicy;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new Shard(i, shardCapacity);
+    }
+
+    /**
+     * Queues the task on the shard owning the chat of the source. If that shard is full, blocks
+     * until it has room or rejects the task, depending on the overflow policy.
+     *
+     * @param source the dispatch source the task was created for
+     * @param task the task to run
+     * @return a future completed once the task finished
+     */
+    @Override
+    public CompletableFuture<Void> execute(DispatchSource source, Runnable task) {
+        return submit(source, task, overflowPolicy == OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Queues the task on the shard owning the chat of the source, rejecting it if that shard is full.
+     *
+     * @param source the dispatch source the task was created for
+     * @param task the task to run
+     * @return a future completed once the task finished, or exceptionally right away if it was rejected
+     */
+    @Override
+    public CompletableFuture<Void> tryExecute(DispatchSource source, Runnable task) {
+        return submit(source, task, false);
+    }
+
+    /**
+     * Queues a task on the shard owning the chat of the source.
+     *
+     * @param source the dispatch source the task was created for
+     * @param task the task to run
+     * @param block whether to wait for room in a full shard instead of rejecting the task
+     * @return a future completed once the task finished
+     */
+    private CompletableFuture<Void> submit(DispatchSource source, Runnable task, boolean block) {
+        CompletableFuture<Void> future = new CompletableFuture<>();
+        if (!open) {
+            future.completeExceptionally(new RejectedExecutionException("Executor is closed"));
+            return future;
+        }
+        Shard shard = shards[shardIndex(source)];
+        Runnable wrapped = () -> {
+            try {
+                task.run();
+                future.complete(null);
+            } catch (Throwable t) {
+                future.completeExceptionally(t);
+            }
+        };
+        try {
+            if (!shard.submit(wrapped, block))
+                future.completeExceptionally(new RejectedExecutionException("Dispatch shard is full"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.completeExceptionally(new RejectedExecutionException("Interrupted while waiting for shard", e));
+        }
+        return future;
+    }
+
+    /**
+     * Stops accepting tasks, lets every shard drain its queue and waits for the shard threads to exit.
+     */
+    @Override
+    public void close() {
+        if (!open)
+            return;
+        open = false;
+        for (Shard shard : shards)
+            shard.stop();
+        for (Shard shard : shards) {
+            try {
+                shard.thread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Gets a snapshot of the backpressure metrics of every shard.
+     *
+     * @return an unmodifiable list of shard statistics, ordered by shard index
+     */
+    public List<ShardStats> getStats() {
+        List<ShardStats> stats = new ArrayList<>(shards.length);
+        for (Shard shard : shards)
+            stats.add(shard.stats());
+        return Collections.unmodifiableList(stats);
+    }
+
+    /**
+     * Gets the amount of tasks waiting in all shard queues.
+     *
+     * @return the total queued task count
+     */
+    public int getQueuedCount() {
+        int queued = 0;
+        for (Shard shard : shards)
+            queued += shard.queue.size();
+        return queued;
+    }
+
+    /**
+     * Gets the amount of shards.
+     *
+     * @return the shard count
+     */
+    public int getShardCount() {
+        return shards.length;
+    }
+
+    /**
+     * Resolves the shard owning the chat of a dispatch source.
+     *
+     * @param source the dispatch source
+     * @return the shard index
+     */
+    private int shardIndex(DispatchSource source) {
+        return (int) Long.remainderUnsigned(ChatKeys.mix(ChatKeys.of(source)), shards.length);
+    }
+
+    /**
+     * A single sequential lane with its own thread and bounded queue.
+     */
+    private static final class Shard {
+        private final BlockingQueue<Runnable> queue;
+        private final Thread thread;
+        private final int capacity;
+        private final LongAdder submitted = new LongAdder();
+        private final LongAdder completed = new LongAdder();
+        private final LongAdder blocked = new LongAdder();
+        private final LongAdder rejected = new LongAdder();
+        private final AtomicInteger maxQueued = new AtomicInteger();
+
+        Shard(int index, int capacity) {
+            this.capacity = capacity;
+            this.queue = new ArrayBlockingQueue<>(capacity);
+            this.thread = new Thread(this::run, "telegram-dispatch-shard-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        boolean submit(Runnable task, boolean block) throws InterruptedException {
+            if (!queue.offer(task)) {
+                if (!block) {
+                    rejected.increment();
+                    return false;
+                }
+                blocked.increment();
+                queue.put(task);
+            }
+            submitted.increment();
+            maxQueued.accumulateAndGet(queue.size(), Math::max);
+            return true;
+        }
+
+        void stop() {
+            try {
+                queue.put(POISON);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        ShardStats stats() {
+            return new ShardStats(queue.size(), capacity, maxQueued.get(), submitted.sum(), completed.sum(),
+                    blocked.sum(), rejected.sum());
+        }
+
+        private void run() {
+            while (true) {
+                Runnable task;
+                try {
+                    task = queue.take();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (task == POISON) {
+                    // run tasks that raced with close() instead of leaving their futures pending
+                    while ((task = queue.poll()) != null) {
+                        if (task != POISON) {
+                            task.run();
+                            completed.increment();
+                        }
+                    }
+                    return;
+                }
+                task.run();
+                completed.increment();
+            }
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.httydcraft.lamp.telegram.execution;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+
+/**
+ * Concurrency model used by a {@link TelegramHandler} to run dispatches.
+ * Implementations decide on which thread a dispatch runs and which dispatches are ordered
+ * relative to each other.
+ *
+ * @see ChatOrderedExecutor
+ * @see TelegramHandler#setDispatchExecutor(DispatchExecutor)
+ */
+public interface DispatchExecutor extends AutoCloseable {
+    /**
+     * Schedules a dispatch task that belongs to the given source.
+     *
+     * @param source the dispatch source the task was created for
+     * @param task the task to run
+     * @return a future completed once the task finished, exceptionally if it failed or was rejected
+     */
+    CompletableFuture<Void> execute(DispatchSource source, Runnable task);
+
+    /**
+     * Schedules a dispatch task without ever blocking the caller, e.g. from a selector thread.
+     * Executors that may block in {@link #execute(DispatchSource, Runnable)} reject the task instead.
+     *
+     * @param source the dispatch source the task was created for
+     * @param task the task to run
+     * @return a future completed once the task finished, completed exceptionally with a
+     *         {@link java.util.concurrent.RejectedExecutionException} right away if it could not be queued
+     */
+    default CompletableFuture<Void> tryExecute(DispatchSource source, Runnable task) {
+        return execute(source, task);
+    }
+
+    /**
+     * Stops accepting new tasks and waits for the already scheduled ones to finish.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,19 @@
+package com.httydcraft.lamp.telegram.execution;
+
+/**
+ * What a {@link ChatOrderedExecutor} does with a task submitted to a full shard.
+ *
+ * @see ChatOrderedExecutor#ChatOrderedExecutor(int, int, OverflowPolicy)
+ */
+public enum OverflowPolicy {
+    /**
+     * The submitter waits until the shard has room, propagating backpressure to the update source
+     */
+    BLOCK,
+
+    /**
+     * The task is rejected right away, its future completes with a
+     * {@link java.util.concurrent.RejectedExecutionException}
+     */
+    REJECT
+}
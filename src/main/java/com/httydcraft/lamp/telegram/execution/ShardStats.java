@@ -0,0 +1,96 @@
+package com.httydcraft.lamp.telegram.execution;
+
+/**
+ * Immutable snapshot of the backpressure metrics of a single {@link ChatOrderedExecutor} shard.
+ *
+ * @see ChatOrderedExecutor#getStats()
+ */
+public final class ShardStats {
+    private final int queued;
+    private final int capacity;
+    private final int maxQueued;
+    private final long submitted;
+    private final long completed;
+    private final long blocked;
+    private final long rejected;
+
+    ShardStats(int queued, int capacity, int maxQueued, long submitted, long completed, long blocked,
+            long rejected) {
+        this.queued = queued;
+        this.capacity = capacity;
+        this.maxQueued = maxQueued;
+        this.submitted = submitted;
+        this.completed = completed;
+        this.blocked = blocked;
+        this.rejected = rejected;
+    }
+
+    /**
+     * Gets the amount of tasks waiting in the shard queue.
+     *
+     * @return the queued task count
+     */
+    public int getQueued() {
+        return queued;
+    }
+
+    /**
+     * Gets the capacity of the shard queue.
+     *
+     * @return the queue capacity
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Gets the highest queue depth observed by a submitter.
+     *
+     * @return the queue high watermark
+     */
+    public int getMaxQueued() {
+        return maxQueued;
+    }
+
+    /**
+     * Gets the amount of tasks submitted to the shard.
+     *
+     * @return the submitted task count
+     */
+    public long getSubmitted() {
+        return submitted;
+    }
+
+    /**
+     * Gets the amount of tasks the shard finished running.
+     *
+     * @return the completed task count
+     */
+    public long getCompleted() {
+        return completed;
+    }
+
+    /**
+     * Gets how many submissions had to wait because the shard queue was full.
+     *
+     * @return the blocked submission count
+     */
+    public long getBlocked() {
+        return blocked;
+    }
+
+    /**
+     * Gets how many submissions were rejected because the shard queue was full.
+     *
+     * @return the rejected submission count
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardStats{queued=" + queued + ", capacity=" + capacity + ", maxQueued=" + maxQueued
+                + ", submitted=" + submitted + ", completed=" + completed + ", blocked=" + blocked + ", rejected=" + rejected + "}";
+    }
+}
@@ -0,0 +1,106 @@
+package com.httydcraft.lamp.telegram.execution;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+
+/**
+ * Dispatch executor running every dispatch on its own virtual thread, so blocking Bot API
+ * calls inside commands do not occupy platform threads. Dispatches of the same chat are
+ * chained to keep them in order, dispatches of different chats are not limited at all.
+ * Requires Java 21 or newer, check {@link VirtualThreads#isSupported()} before creating it.
+ *
+ * @see DispatchExecutor
+ * @see VirtualThreads
+ */
+public class VirtualThreadExecutor implements DispatchExecutor {
+    /**
+     * Maximum time {@link #close()} waits for running dispatches, in seconds
+     */
+    private static final long CLOSE_TIMEOUT = 60;
+
+    /**
+     * The executor starting a virtual thread per task
+     */
+    private final ExecutorService executor;
+
+    /**
+     * Last scheduled dispatch of every chat with dispatches in flight, null if ordering is disabled
+     */
+    private final ConcurrentMap<Long, CompletableFuture<Void>> tails;
+
+    /**
+     * Creates a new chat ordered virtual thread executor.
+     *
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public VirtualThreadExecutor() {
+        this(true);
+    }
+
+    /**
+     * Creates a new virtual thread executor.
+     *
+     * @param ordered whether dispatches of the same chat should run in order
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    public VirtualThreadExecutor(boolean ordered) {
+        this.executor = VirtualThreads.newThreadPerTaskExecutor("telegram-dispatch-virtual-");
+        this.tails = ordered ? new ConcurrentHashMap<>() : null;
+    }
+
+    /**
+     * Runs the task on a new virtual thread once the previous dispatch of the same chat finished.
+     *
+     * @param source the dispatch source the task was created for
+     * @param task the task to run
+     * @return a future completed once the task finished
+     */
+    @Override
+    public CompletableFuture<Void> execute(DispatchSource source, Runnable task) {
+        try {
+            if (tails == null)
+                return CompletableFuture.runAsync(task, executor);
+            Long key = ChatKeys.of(source);
+            @SuppressWarnings("unchecked")
+            CompletableFuture<Void>[] scheduled = new CompletableFuture[1];
+            tails.compute(key, (chat, tail) -> scheduled[0] = tail == null
+                    ? CompletableFuture.runAsync(task, executor)
+                    : tail.handle((result, failure) -> null).thenRunAsync(task, executor));
+            CompletableFuture<Void> future = scheduled[0];
+            future.whenComplete((result, failure) -> tails.remove(key, future));
+            return future;
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<Void> future = new CompletableFuture<>();
+            future.completeExceptionally(e);
+            return future;
+        }
+    }
+
+    /**
+     * Gets the amount of chats with dispatches in flight.
+     *
+     * @return the active chat count, or 0 if ordering is disabled
+     */
+    public int getActiveChats() {
+        return tails == null ? 0 : tails.size();
+    }
+
+    /**
+     * Stops accepting tasks and waits up to a minute for running dispatches to finish.
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(CLOSE_TIMEOUT, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
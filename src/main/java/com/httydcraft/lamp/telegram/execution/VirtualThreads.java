@@ -0,0 +1,34 @@
+package com.httydcraft.lamp.telegram.execution;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * Access point to virtual threads. This is the Java 8 variant which reports virtual threads
+ * as unsupported, the multi-release jar replaces it with a working implementation on Java 21+.
+ *
+ * @see VirtualThreadExecutor
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks whether virtual threads are available on the running JVM.
+     *
+     * @return true if virtual threads can be used
+     */
+    public static boolean isSupported() {
+        return false;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for every task.
+     *
+     * @param namePrefix the name prefix of the created threads
+     * @return the executor
+     * @throws UnsupportedOperationException if virtual threads are not supported
+     */
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        throw new UnsupportedOperationException("Virtual threads require Java 21 or newer");
+    }
+}
@@ -0,0 +1,22 @@
+package com.httydcraft.lamp.telegram.ingest;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * Receives the updates fetched by an {@link UpdateIngestionEngine}.
+ *
+ * @see UpdateIngestionEngine#UpdateIngestionEngine(com.pengrad.telegrambot.TelegramBot, UpdateConsumer, int, int)
+ */
+@FunctionalInterface
+public interface UpdateConsumer {
+    /**
+     * Accepts an update without blocking the polling thread.
+     *
+     * @param update the update
+     * @return a future completed once the update was handled, the batch offset is acknowledged
+     *         after the futures of all updates of the batch completed
+     */
+    CompletableFuture<Void> accept(Update update);
+}
@@ -0,0 +1,498 @@
+package com.httydcraft.lamp.telegram.ingest;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.execution.DispatchExecutor;
+import com.httydcraft.lamp.telegram.journal.UpdateJournal;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+import com.pengrad.telegrambot.request.GetUpdates;
+import com.pengrad.telegrambot.response.GetUpdatesResponse;
+
+/**
+ * Long-polling update ingestion engine attached to a {@link TelegramHandler}.
+ * Fetches {@code getUpdates} batches on a dedicated polling thread and hands every update to
+ * the {@link DispatchExecutor} of the handler without waiting for the batch to finish, so a
+ * slow command only holds back its own chat for a while. At most {@link #getMaxInFlight()}
+ * dispatches are in flight, the polling thread waits for a free slot beyond that.
+ * <p>
+ * Without a journal, only updates below the oldest unfinished one are acknowledged to Telegram,
+ * so none is lost if the process dies. Updates fetched again because a dispatch in front of
+ * them was still running are skipped. This only holds until a whole batch (the batch limit) has
+ * queued up behind a slow dispatch: Telegram then delivers no update that was not fetched yet,
+ * and the polling thread waits for that dispatch to finish, stalling every chat of the bot.
+ * <p>
+ * With an {@link UpdateJournal}, set through {@link #setJournal(UpdateJournal)}, every update is
+ * acknowledged as soon as it was journaled, so a slow dispatch never makes Telegram deliver the
+ * following updates again and never stalls the other chats, and the journal replays the
+ * unfinished ones after a restart.
+ * <p>
+ * The updates can be handed to a custom {@link UpdateConsumer} instead of a handler.
+ *
+ * @see TelegramHandler#startPolling()
+ * @see DispatchSource#fromUpdate(Update)
+ */
+public class UpdateIngestionEngine implements AutoCloseable {
+    /**
+     * Default maximum amount of updates fetched with a single getUpdates call
+     */
+    public static final int DEFAULT_BATCH_LIMIT = 100;
+
+    /**
+     * Default long polling timeout in seconds
+     */
+    public static final int DEFAULT_POLL_TIMEOUT = 50;
+
+    /**
+     * Default maximum amount of updates dispatched concurrently, below the default
+     * {@link com.httydcraft.lamp.telegram.execution.ChatOrderedExecutor} shard capacity so a
+     * single busy chat cannot block the polling thread on a full shard
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1000;
+
+    /**
+     * Maximum delay between polling attempts after consecutive failures, in milliseconds
+     */
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private static final Logger LOGGER = Logger.getLogger(UpdateIngestionEngine.class.getName());
+
+    /**
+     * The bot updates are fetched with
+     */
+    private final TelegramBot bot;
+
+    /**
+     * Receives the fetched updates
+     */
+    private final UpdateConsumer consumer;
+
+    /**
+     * Maximum amount of updates requested per batch
+     */
+    private final int batchLimit;
+
+    /**
+     * Long polling timeout in seconds
+     */
+    private final int pollTimeout;
+
+    /**
+     * Journal recording the updates before they are dispatched, null if updates are not journaled
+     */
+    private volatile UpdateJournal journal;
+
+    /**
+     * Update types requested from Telegram, null to keep the types of the previous request
+     */
+    private volatile String[] allowedUpdates;
+
+    /**
+     * Maximum amount of updates dispatched concurrently
+     */
+    private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+
+    /**
+     * Slots of the dispatches in flight, created when the engine starts
+     */
+    private Semaphore permits;
+
+    /**
+     * Ids of the updates handed to the consumer whose dispatch did not finish yet
+     */
+    private final ConcurrentSkipListSet<Integer> inFlight = new ConcurrentSkipListSet<>();
+
+    /**
+     * Monitor notified whenever a dispatch finished
+     */
+    private final Object progress = new Object();
+
+    /**
+     * The id following the last update handed to the consumer, only accessed by the polling thread
+     */
+    private int fetched;
+
+    /**
+     * Offset sent with the last getUpdates call, every update below it is acknowledged
+     */
+    private volatile int offset;
+
+    /**
+     * Whether the polling loop should keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * The thread running the polling loop, null if the engine was not started
+     */
+    private Thread pollingThread;
+
+    /**
+     * Creates a new ingestion engine with default batch settings.
+     *
+     * @param handler the handler to dispatch updates to
+     */
+    public UpdateIngestionEngine(TelegramHandler handler) {
+        this(handler, DEFAULT_BATCH_LIMIT, DEFAULT_POLL_TIMEOUT);
+    }
+
+    /**
+     * Creates a new ingestion engine.
+     *
+     * @param handler the handler to dispatch updates to
+     * @param batchLimit the maximum amount of updates fetched per getUpdates call (1-100)
+     * @param pollTimeout the long polling timeout in seconds
+     * @throws IllegalArgumentException if any of the numeric arguments is out of range
+     */
+    public UpdateIngestionEngine(TelegramHandler handler, int batchLimit, int pollTimeout) {
+        this(handler, handler.getBot(), batchLimit, pollTimeout);
+    }
+
+    /**
+     * Creates a new ingestion engine fetching the updates of a bot attached to the handler.
+     *
+     * @param handler the handler to dispatch updates to
+     * @param bot the bot to fetch updates with, attached to the handler
+     * @param batchLimit the maximum amount of updates fetched per getUpdates call (1-100)
+     * @param pollTimeout the long polling timeout in seconds
+     * @throws IllegalArgumentException if any of the numeric arguments is out of range
+     * @see TelegramHandler#attachBot(TelegramBot)
+     */
+    public UpdateIngestionEngine(TelegramHandler handler, TelegramBot bot, int batchLimit, int pollTimeout) {
+        this(bot, update -> handler.dispatchAsync(bot, update), batchLimit, pollTimeout);
+    }
+
+    /**
+     * Creates a new ingestion engine handing the updates of a bot to a consumer instead of
+     * dispatching them, e.g. to forward them to other nodes.
+     *
+     * @param bot the bot to fetch updates with
+     * @param consumer the consumer of the fetched updates
+     * @param batchLimit the maximum amount of updates fetched per getUpdates call (1-100)
+     * @param pollTimeout the long polling timeout in seconds
+     * @throws IllegalArgumentException if any of the numeric arguments is out of range
+     * @see com.httydcraft.lamp.telegram.cluster.FrontNode
+     */
+    public UpdateIngestionEngine(TelegramBot bot, UpdateConsumer consumer, int batchLimit, int pollTimeout) {
+        if (batchLimit < 1 || batchLimit > DEFAULT_BATCH_LIMIT)
+            throw new IllegalArgumentException("batchLimit must be between 1 and " + DEFAULT_BATCH_LIMIT);
+        if (pollTimeout < 0)
+            throw new IllegalArgumentException("pollTimeout cannot be negative");
+        this.bot = bot;
+        this.consumer = consumer;
+        this.batchLimit = batchLimit;
+        this.pollTimeout = pollTimeout;
+    }
+
+    /**
+     * Records every batch in a journal before dispatching it, so batches interrupted by a crash
+     * are dispatched again on the next start. Must be set before the engine is started.
+     *
+     * @param journal the update journal, or null to dispatch updates without journaling them
+     * @throws IllegalStateException if the engine is running
+     * @see UpdateJournal
+     */
+    public synchronized void setJournal(UpdateJournal journal) {
+        if (running)
+            throw new IllegalStateException("The journal cannot be changed while the engine is running");
+        this.journal = journal;
+    }
+
+    /**
+     * Sets the maximum amount of updates dispatched concurrently. Must be set before the engine is started.
+     *
+     * @param maxInFlight the maximum amount of dispatches in flight
+     * @throws IllegalArgumentException if maxInFlight is not positive
+     * @throws IllegalStateException if the engine is running
+     */
+    public synchronized void setMaxInFlight(int maxInFlight) {
+        if (maxInFlight < 1)
+            throw new IllegalArgumentException("maxInFlight must be positive");
+        if (running)
+            throw new IllegalStateException("maxInFlight cannot be changed while the engine is running");
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Gets the maximum amount of updates dispatched concurrently.
+     *
+     * @return the maximum amount of dispatches in flight
+     */
+    public int getMaxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Gets the amount of updates whose dispatch did not finish yet.
+     *
+     * @return the amount of dispatches in flight
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Sets the update types requested from Telegram, e.g. to receive {@code chat_member} updates,
+     * which are not sent by default. Takes effect with the next getUpdates call.
+     *
+     * @param allowedUpdates the update types, e.g. {@code "message", "callback_query", "chat_member"},
+     *        or null to keep the types of the previous request
+     */
+    public void setAllowedUpdates(String... allowedUpdates) {
+        this.allowedUpdates = allowedUpdates == null ? null : allowedUpdates.clone();
+    }
+
+    /**
+     * Gets the journal recording the updates before they are dispatched.
+     *
+     * @return the update journal, or null if updates are not journaled
+     */
+    public UpdateJournal getJournal() {
+        return journal;
+    }
+
+    /**
+     * Starts the polling thread. Does nothing if the engine is already running.
+     */
+    public synchronized void start() {
+        if (running)
+            return;
+        running = true;
+        permits = new Semaphore(maxInFlight);
+        pollingThread = new Thread(this::pollLoop, "telegram-polling");
+        pollingThread.setDaemon(true);
+        pollingThread.start();
+    }
+
+    /**
+     * Stops polling and waits for the dispatches in flight to finish.
+     */
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (pollingThread == null)
+            return;
+        pollingThread.interrupt();
+        try {
+            pollingThread.join();
+            synchronized (progress) {
+                while (!inFlight.isEmpty())
+                    progress.wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        pollingThread = null;
+        UpdateJournal journal = this.journal;
+        if (journal != null) {
+            try {
+                journal.commit(completedOffset());
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to commit the update journal", e);
+            }
+        }
+    }
+
+    /**
+     * Checks whether the polling loop is running.
+     *
+     * @return true if the engine was started and not closed yet
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the offset sent with the last getUpdates call, every update below it was acknowledged.
+     * Without a journal, every update below it also finished dispatching.
+     *
+     * @return the acknowledged update offset
+     */
+    public int getOffset() {
+        return offset;
+    }
+
+    /**
+     * Polls updates until the engine is closed, backing off after failed attempts.
+     */
+    private void pollLoop() {
+        UpdateJournal journal = this.journal;
+        if (journal != null)
+            replay(journal);
+        long backoff = 0;
+        while (running) {
+            try {
+                if (backoff > 0)
+                    Thread.sleep(backoff);
+                int requestOffset = completedOffset();
+                if (journal != null) {
+                    // journaled updates survive a restart, acknowledge them without waiting for their dispatch
+                    journal.commit(requestOffset);
+                    requestOffset = Math.max(requestOffset, journal.getNextOffset());
+                }
+                GetUpdates request = new GetUpdates().offset(requestOffset).limit(batchLimit).timeout(pollTimeout);
+                String[] types = allowedUpdates;
+                if (types != null)
+                    request.allowedUpdates(types);
+                GetUpdatesResponse response = bot.execute(request);
+                if (!response.isOk()) {
+                    LOGGER.warning("getUpdates failed: " + response.errorCode() + " " + response.description());
+                    Integer retryAfter = response.parameters() != null ? response.parameters().retryAfter() : null;
+                    backoff = nextBackoff(backoff, retryAfter);
+                    continue;
+                }
+                backoff = 0;
+                offset = requestOffset;
+                List<Update> updates = response.updates();
+                if (updates == null || updates.isEmpty())
+                    continue;
+                List<Update> fresh = new ArrayList<>(updates.size());
+                for (Update update : updates) {
+                    if (update.updateId() >= fetched)
+                        fresh.add(update);
+                }
+                if (fresh.isEmpty()) {
+                    // the whole batch is still in flight behind a slow dispatch
+                    if (journal == null)
+                        awaitProgress(requestOffset);
+                    continue;
+                }
+                if (journal != null)
+                    append(journal, fresh);
+                for (Update update : fresh)
+                    dispatch(update);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Failed to journal updates", e);
+                backoff = nextBackoff(backoff, null);
+            } catch (RuntimeException e) {
+                if (!running)
+                    return;
+                LOGGER.log(Level.WARNING, "Failed to poll updates", e);
+                backoff = nextBackoff(backoff, null);
+            }
+        }
+    }
+
+    /**
+     * Journals a batch of updates. If journaling fails partway, the updates journaled before
+     * the failure are dispatched anyway, as the next getUpdates call acknowledges them; the
+     * others are fetched again.
+     *
+     * @param journal the update journal
+     * @param updates the fetched updates
+     * @throws IOException if the journal failed
+     * @throws InterruptedException if interrupted while dispatching the journaled updates
+     */
+    private void append(UpdateJournal journal, List<Update> updates) throws IOException, InterruptedException {
+        try {
+            journal.append(updates);
+        } catch (IOException | RuntimeException e) {
+            int journaled = journal.getNextOffset();
+            for (Update update : updates) {
+                if (update.updateId() < journaled)
+                    dispatch(update);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Dispatches the journaled updates that were not dispatched before the last shutdown and
+     * skips them when Telegram delivers them again.
+     *
+     * @param journal the update journal
+     */
+    private void replay(UpdateJournal journal) {
+        try {
+            List<Update> pending = journal.readPending();
+            if (!pending.isEmpty())
+                LOGGER.info("Replaying " + pending.size() + " journaled updates");
+            for (Update update : pending)
+                dispatch(update);
+            fetched = Math.max(fetched, journal.getNextOffset());
+        } catch (IOException e) {
+            LOGGER.log(Level.SEVERE, "Failed to replay the update journal", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Hands an update to the consumer once a dispatch slot is free. Failed dispatches are
+     * reported and count as finished.
+     *
+     * @param update the update
+     * @throws InterruptedException if the engine was closed while waiting for a slot
+     */
+    private void dispatch(Update update) throws InterruptedException {
+        permits.acquire();
+        int id = update.updateId();
+        inFlight.add(id);
+        fetched = Math.max(fetched, id + 1);
+        CompletableFuture<Void> dispatch;
+        try {
+            dispatch = consumer.accept(update);
+        } catch (RuntimeException e) {
+            dispatch = new CompletableFuture<>();
+            dispatch.completeExceptionally(e);
+        }
+        dispatch.whenComplete((result, failure) -> {
+            if (failure != null)
+                LOGGER.log(Level.SEVERE, "Failed to dispatch update " + id, failure);
+            inFlight.remove(id);
+            permits.release();
+            synchronized (progress) {
+                progress.notifyAll();
+            }
+        });
+    }
+
+    /**
+     * Gets the offset below which every fetched update finished dispatching.
+     *
+     * @return the id of the oldest update in flight, or the id following the last fetched update
+     */
+    private int completedOffset() {
+        Integer oldest = inFlight.ceiling(Integer.MIN_VALUE);
+        return oldest != null ? oldest : fetched;
+    }
+
+    /**
+     * Waits until the oldest dispatch in flight finished.
+     *
+     * @param offset the offset to advance past
+     * @throws InterruptedException if the engine was closed while waiting
+     */
+    private void awaitProgress(int offset) throws InterruptedException {
+        synchronized (progress) {
+            while (running && completedOffset() <= offset)
+                progress.wait();
+        }
+    }
+
+    /**
+     * Computes the delay before the next polling attempt.
+     *
+     * @param previous the previous delay in milliseconds
+     * @param retryAfter the delay requested by Telegram in seconds, may be null
+     * @return the next delay in milliseconds
+     */
+    private static long nextBackoff(long previous, Integer retryAfter) {
+        if (retryAfter != null)
+            return TimeUnit.SECONDS.toMillis(retryAfter);
+        return Math.min(MAX_BACKOFF_MILLIS, previous == 0 ? 1000 : previous * 2);
+    }
+}
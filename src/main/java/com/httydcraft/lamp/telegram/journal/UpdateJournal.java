@@ -0,0 +1,338 @@
+package com.httydcraft.lamp.telegram.journal;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.model.Update;
+
+/**
+ * Append-only journal of the raw updates fetched by an
+ * {@link com.httydcraft.lamp.telegram.ingest.UpdateIngestionEngine}, written to memory-mapped
+ * segment files before the updates are dispatched. Journaled updates are acknowledged to
+ * Telegram right away, which decouples fetching from slow dispatches. The offset below which
+ * every update was dispatched is kept in a checkpoint file, so the updates interrupted by a
+ * crash are replayed on the next start. Updates may therefore be dispatched more than once,
+ * but none is lost.
+ * <p>
+ * Records are written to the page cache and survive a crash of the process right away, the
+ * sync interval only controls how often they are forced to disk to survive a crash of the machine.
+ * With a sync interval above 1, updates acknowledged since the last sync are lost if the machine crashes.
+ * Segments whose updates were all dispatched are deleted. A journal is not thread-safe and
+ * must be used by a single ingestion engine at a time.
+ *
+ * @see com.httydcraft.lamp.telegram.ingest.UpdateIngestionEngine#setJournal(UpdateJournal)
+ */
+public class UpdateJournal implements AutoCloseable {
+    /**
+     * Default size of a segment file in bytes
+     */
+    public static final int DEFAULT_SEGMENT_SIZE = 64 << 20;
+
+    /**
+     * Size of a record header: payload length, update id and CRC32 of the payload
+     */
+    private static final int HEADER_SIZE = 12;
+
+    private static final String SEGMENT_SUFFIX = ".journal";
+    private static final String CHECKPOINT_FILE = "checkpoint";
+
+    /**
+     * The directory of the segment and checkpoint files
+     */
+    private final Path directory;
+
+    /**
+     * Size of new segment files in bytes
+     */
+    private final int segmentSize;
+
+    /**
+     * Amount of appended batches between forcing the journal to disk, 0 to leave it to the OS
+     */
+    private final int syncInterval;
+
+    /**
+     * Segment files indexed by the id of their first update
+     */
+    private final TreeMap<Integer, Path> segments = new TreeMap<>();
+
+    /**
+     * The mapped checkpoint file holding the committed offset
+     */
+    private final MappedByteBuffer checkpoint;
+
+    /**
+     * The mapped segment updates are appended to, null until the first append
+     */
+    private MappedByteBuffer active;
+
+    /**
+     * The id following the last appended update
+     */
+    private int nextOffset;
+
+    /**
+     * Amount of batches appended since the journal was last forced to disk
+     */
+    private int unsyncedBatches;
+
+    /**
+     * Opens a journal forcing every batch to disk before it is dispatched.
+     *
+     * @param directory the directory of the journal, created if missing
+     * @throws IOException if the journal cannot be opened
+     */
+    public UpdateJournal(Path directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE, 1);
+    }
+
+    /**
+     * Opens a journal.
+     *
+     * @param directory the directory of the journal, created if missing
+     * @param segmentSize the size of segment files in bytes, larger updates get a segment of their own
+     * @param syncInterval the amount of batches appended between forcing the journal to disk,
+     *        1 for full durability, 0 to leave flushing to the OS
+     * @throws IOException if the journal cannot be opened
+     * @throws IllegalArgumentException if segmentSize is not positive or syncInterval is negative
+     */
+    public UpdateJournal(Path directory, int segmentSize, int syncInterval) throws IOException {
+        if (segmentSize <= 0)
+            throw new IllegalArgumentException("segmentSize must be positive");
+        if (syncInterval < 0)
+            throw new IllegalArgumentException("syncInterval cannot be negative");
+        this.directory = Files.createDirectories(directory);
+        this.segmentSize = segmentSize;
+        this.syncInterval = syncInterval;
+        this.checkpoint = map(directory.resolve(CHECKPOINT_FILE), Integer.BYTES);
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + SEGMENT_SUFFIX)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                segments.put(Integer.parseInt(name.substring(0, name.length() - SEGMENT_SUFFIX.length())), file);
+            }
+        }
+        this.nextOffset = getCommittedOffset();
+        if (!segments.isEmpty()) {
+            Map.Entry<Integer, Path> last = segments.lastEntry();
+            active = map(last.getValue(), (int) Files.size(last.getValue()));
+            nextOffset = Math.max(nextOffset, last.getKey());
+            active.position(scan(active, (updateId, payload) -> nextOffset = Math.max(nextOffset, updateId + 1)));
+        }
+    }
+
+    /**
+     * Appends a batch of updates, forcing the journal to disk if the sync interval elapsed.
+     *
+     * @param updates the updates in the order they were fetched
+     * @throws IOException if a segment cannot be created
+     */
+    public void append(List<Update> updates) throws IOException {
+        CRC32 crc = new CRC32();
+        for (Update update : updates) {
+            byte[] payload = BotUtils.toJson(update).getBytes(StandardCharsets.UTF_8);
+            int size = HEADER_SIZE + payload.length;
+            // keep 4 zero bytes after the last record to mark the end of the segment
+            if (active == null || active.remaining() < size + Integer.BYTES)
+                roll(update.updateId(), size + Integer.BYTES);
+            crc.reset();
+            crc.update(payload, 0, payload.length);
+            active.putInt(payload.length).putInt(update.updateId()).putInt((int) crc.getValue()).put(payload);
+            nextOffset = Math.max(nextOffset, update.updateId() + 1);
+        }
+        if (syncInterval > 0 && ++unsyncedBatches >= syncInterval)
+            sync();
+    }
+
+    /**
+     * Commits the offset below which every update was dispatched and deletes the segments
+     * holding only dispatched updates.
+     *
+     * @param offset the id of the first update not dispatched yet
+     * @throws IOException if a segment cannot be deleted
+     */
+    public void commit(int offset) throws IOException {
+        checkpoint.putInt(0, offset);
+        while (segments.size() > 1) {
+            Map.Entry<Integer, Path> first = segments.firstEntry();
+            if (segments.higherKey(first.getKey()) > offset)
+                break;
+            Files.deleteIfExists(first.getValue());
+            segments.remove(first.getKey());
+        }
+    }
+
+    /**
+     * Reads the journaled updates that were not dispatched yet, in the order they were fetched.
+     *
+     * @return the updates at or above the committed offset
+     * @throws IOException if a segment cannot be read
+     */
+    public List<Update> readPending() throws IOException {
+        int committed = getCommittedOffset();
+        List<Update> updates = new ArrayList<>();
+        RecordVisitor visitor = (updateId, payload) -> {
+            if (updateId >= committed)
+                updates.add(BotUtils.parseUpdate(new String(payload, StandardCharsets.UTF_8)));
+        };
+        for (Path file : segments.values()) {
+            if (file.equals(segments.lastEntry().getValue())) {
+                ByteBuffer segment = active.duplicate();
+                segment.position(0);
+                scan(segment, visitor);
+            } else {
+                // older segments are streamed, a mapping would stay reserved until it is garbage collected
+                try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                    scan(in, Files.size(file), visitor);
+                }
+            }
+        }
+        return updates;
+    }
+
+    /**
+     * Gets the committed offset.
+     *
+     * @return the id of the first update not dispatched yet, 0 if nothing was committed
+     */
+    public int getCommittedOffset() {
+        return checkpoint.getInt(0);
+    }
+
+    /**
+     * Gets the offset following the last journaled update, which can be acknowledged to Telegram.
+     *
+     * @return the id following the last appended update
+     */
+    public int getNextOffset() {
+        return nextOffset;
+    }
+
+    /**
+     * Forces the active segment and the checkpoint to disk.
+     */
+    public void sync() {
+        if (active != null)
+            active.force();
+        checkpoint.force();
+        unsyncedBatches = 0;
+    }
+
+    /**
+     * Forces the journal to disk. The mappings are released once they are garbage collected.
+     */
+    @Override
+    public void close() {
+        sync();
+    }
+
+    /**
+     * Starts a new segment, forcing the previous one to disk.
+     *
+     * @param firstUpdateId the id of the first update of the segment
+     * @param minSize the minimum size of the segment
+     * @throws IOException if the segment cannot be created
+     */
+    private void roll(int firstUpdateId, int minSize) throws IOException {
+        if (active != null)
+            active.force();
+        Path file = directory.resolve(String.format("%010d%s", firstUpdateId, SEGMENT_SUFFIX));
+        active = map(file, Math.max(segmentSize, minSize));
+        active.position(scan(active, null));
+        segments.put(firstUpdateId, file);
+    }
+
+    /**
+     * Walks the valid records of a segment from its current position.
+     *
+     * @param segment the segment
+     * @param visitor the visitor of the records, may be null
+     * @return the position following the last valid record
+     */
+    private static int scan(ByteBuffer segment, RecordVisitor visitor) {
+        CRC32 crc = new CRC32();
+        int position = segment.position();
+        while (segment.limit() - position >= HEADER_SIZE) {
+            int length = segment.getInt(position);
+            if (length <= 0 || length > segment.limit() - position - HEADER_SIZE)
+                break;
+            byte[] payload = new byte[length];
+            ByteBuffer record = segment.duplicate();
+            record.position(position + HEADER_SIZE);
+            record.get(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != segment.getInt(position + 8))
+                break;
+            if (visitor != null)
+                visitor.visit(segment.getInt(position + 4), payload);
+            position += HEADER_SIZE + length;
+        }
+        return position;
+    }
+
+    /**
+     * Walks the valid records of a segment file from its start.
+     *
+     * @param in the stream of the segment file
+     * @param size the size of the segment file
+     * @param visitor the visitor of the records
+     * @throws IOException if the file cannot be read
+     */
+    private static void scan(DataInputStream in, long size, RecordVisitor visitor) throws IOException {
+        CRC32 crc = new CRC32();
+        long position = 0;
+        while (size - position >= HEADER_SIZE) {
+            int length = in.readInt();
+            if (length <= 0 || length > size - position - HEADER_SIZE)
+                return;
+            int updateId = in.readInt();
+            int checksum = in.readInt();
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            crc.reset();
+            crc.update(payload, 0, length);
+            if ((int) crc.getValue() != checksum)
+                return;
+            visitor.visit(updateId, payload);
+            position += HEADER_SIZE + length;
+        }
+    }
+
+    /**
+     * Maps a file, creating or growing it to the given size.
+     *
+     * @param file the file
+     * @param size the size of the mapping
+     * @return the mapped buffer
+     * @throws IOException if the file cannot be mapped
+     */
+    private static MappedByteBuffer map(Path file, int size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(size, channel.size()));
+        }
+    }
+
+    /**
+     * Visits the records of a segment.
+     */
+    @FunctionalInterface
+    private interface RecordVisitor {
+        void visit(int updateId, byte[] payload);
+    }
+}
@@ -0,0 +1,99 @@
+package com.httydcraft.lamp.telegram.metrics;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per-command invocation counts, error counts and phase latencies of a handler.
+ * Recording is lock-free, snapshots can be taken at any time and pushed to exporters.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#getMetrics()
+ * @see MetricsExporter
+ */
+public class CommandMetrics {
+    private final Map<String, CommandStats> commands = new ConcurrentHashMap<>();
+    private final LongAdder unknownCommands = new LongAdder();
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+
+    /**
+     * Records a single command invocation.
+     *
+     * @param command the command name
+     * @param parseNanos time spent up to resolving the command
+     * @param executeNanos time spent resolving arguments and running the command
+     * @param replyNanos time spent blocked on sending replies
+     * @param failed whether the invocation ended with an error reply
+     */
+    public void record(String command, long parseNanos, long executeNanos, long replyNanos, boolean failed) {
+        CommandStats stats = commands.get(command);
+        if (stats == null)
+            stats = commands.computeIfAbsent(command, name -> new CommandStats());
+        stats.invocations.increment();
+        if (failed)
+            stats.errors.increment();
+        stats.parse.record(parseNanos);
+        stats.execute.record(executeNanos);
+        stats.reply.record(replyNanos);
+    }
+
+    /**
+     * Records a dispatch that did not resolve to any command.
+     */
+    public void recordUnknown() {
+        unknownCommands.increment();
+    }
+
+    /**
+     * Takes a snapshot of all commands.
+     *
+     * @return the snapshot
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, CommandSnapshot> snapshots = new TreeMap<>();
+        commands.forEach((name, stats) -> snapshots.put(name, stats.snapshot(name)));
+        return new MetricsSnapshot(System.currentTimeMillis(), unknownCommands.sum(), snapshots);
+    }
+
+    /**
+     * Registers an exporter receiving the snapshots of {@link #export()}.
+     *
+     * @param exporter the exporter
+     */
+    public void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    /**
+     * Unregisters an exporter.
+     *
+     * @param exporter the exporter
+     */
+    public void removeExporter(MetricsExporter exporter) {
+        exporters.remove(exporter);
+    }
+
+    /**
+     * Takes a snapshot and passes it to every registered exporter.
+     * Call it periodically, e.g. from a scheduled executor.
+     *
+     * @return the exported snapshot
+     */
+    public MetricsSnapshot export() {
+        MetricsSnapshot snapshot = snapshot();
+        for (MetricsExporter exporter : exporters)
+            exporter.export(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Forgets all recorded metrics.
+     */
+    public void reset() {
+        commands.clear();
+        unknownCommands.reset();
+    }
+}
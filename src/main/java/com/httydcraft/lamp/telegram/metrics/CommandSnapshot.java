@@ -0,0 +1,87 @@
+package com.httydcraft.lamp.telegram.metrics;
+
+/**
+ * Immutable metrics of a single command. Latencies are split into the phases of a dispatch:
+ * parsing (tokenizing the input and resolving the command), executing (argument resolution and
+ * the command body) and sending replies.
+ *
+ * @see MetricsSnapshot
+ */
+public final class CommandSnapshot {
+    private final String name;
+    private final long invocations;
+    private final long errors;
+    private final HistogramSnapshot parse;
+    private final HistogramSnapshot execute;
+    private final HistogramSnapshot reply;
+
+    CommandSnapshot(String name, long invocations, long errors, HistogramSnapshot parse, HistogramSnapshot execute,
+            HistogramSnapshot reply) {
+        this.name = name;
+        this.invocations = invocations;
+        this.errors = errors;
+        this.parse = parse;
+        this.execute = execute;
+        this.reply = reply;
+    }
+
+    /**
+     * Gets the command path, e.g. {@code "settings language"}.
+     *
+     * @return the command name
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Gets how often the command was invoked.
+     *
+     * @return the invocation count
+     */
+    public long getInvocations() {
+        return invocations;
+    }
+
+    /**
+     * Gets how many invocations ended with an error reply to the actor.
+     *
+     * @return the error count
+     */
+    public long getErrors() {
+        return errors;
+    }
+
+    /**
+     * Gets the latencies of parsing the input up to the resolved command.
+     *
+     * @return the parse latency histogram
+     */
+    public HistogramSnapshot getParse() {
+        return parse;
+    }
+
+    /**
+     * Gets the latencies of argument resolution and command execution, excluding blocking reply sends.
+     *
+     * @return the execute latency histogram
+     */
+    public HistogramSnapshot getExecute() {
+        return execute;
+    }
+
+    /**
+     * Gets the time spent blocked on sending replies per invocation.
+     *
+     * @return the reply-send latency histogram
+     */
+    public HistogramSnapshot getReply() {
+        return reply;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandSnapshot{name=" + name + ", invocations=" + invocations + ", errors=" + errors + ", parse="
+                + parse + ", execute=" + execute + ", reply=" + reply + "}";
+    }
+}
@@ -0,0 +1,21 @@
+package com.httydcraft.lamp.telegram.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live counters and latency histograms of a single command.
+ *
+ * @see CommandMetrics
+ */
+final class CommandStats {
+    final LongAdder invocations = new LongAdder();
+    final LongAdder errors = new LongAdder();
+    final LatencyHistogram parse = new LatencyHistogram();
+    final LatencyHistogram execute = new LatencyHistogram();
+    final LatencyHistogram reply = new LatencyHistogram();
+
+    CommandSnapshot snapshot(String name) {
+        return new CommandSnapshot(name, invocations.sum(), errors.sum(), parse.snapshot(), execute.snapshot(),
+                reply.snapshot());
+    }
+}
@@ -0,0 +1,132 @@
+package com.httydcraft.lamp.telegram.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, in the spirit of HdrHistogram.
+ * Every power of two is split into 16 linear sub-buckets, which bounds the relative error of
+ * reported percentiles to about 6%. Values are recorded in nanoseconds, values above roughly
+ * an hour are clamped into the last bucket.
+ *
+ * @see HistogramSnapshot
+ */
+public final class LatencyHistogram {
+    /**
+     * log2 of the linear sub-buckets per power of two
+     */
+    static final int SUB_BUCKET_BITS = 4;
+
+    /**
+     * Linear sub-buckets per power of two
+     */
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * Highest tracked power of two (2^42 ns is about 73 minutes)
+     */
+    private static final int MAX_EXPONENT = 42;
+
+    /**
+     * Amount of buckets needed to cover every value up to 2^(MAX_EXPONENT + 1)
+     */
+    static final int BUCKET_COUNT = (MAX_EXPONENT - SUB_BUCKET_BITS + 2) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    /**
+     * Records a latency.
+     *
+     * @param nanos the latency in nanoseconds, negative values are recorded as 0
+     */
+    public void record(long nanos) {
+        long value = Math.max(0, nanos);
+        counts.incrementAndGet(bucketIndex(value));
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    /**
+     * Records a latency in the given unit.
+     *
+     * @param duration the latency
+     * @param unit the unit of the latency
+     */
+    public void record(long duration, TimeUnit unit) {
+        record(unit.toNanos(duration));
+    }
+
+    /**
+     * Copies the current state. Recording may continue concurrently, so the snapshot can be
+     * slightly inconsistent between its count and its buckets, but never blocks recorders.
+     *
+     * @return the snapshot
+     */
+    public HistogramSnapshot snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = counts.get(i);
+            total += buckets[i];
+        }
+        return new HistogramSnapshot(buckets, total, sum.sum(), max.get());
+    }
+
+    /**
+     * Gets the amount of recorded values.
+     *
+     * @return the recorded value count
+     */
+    public long getCount() {
+        return count.sum();
+    }
+
+    /**
+     * Resolves the bucket of a value.
+     *
+     * @param value the non-negative value
+     * @return the bucket index
+     */
+    static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS)
+            return (int) value;
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        if (exponent > MAX_EXPONENT)
+            return BUCKET_COUNT - 1;
+        int shift = exponent - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) & (SUB_BUCKETS - 1);
+        return (shift + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Gets the smallest value falling into a bucket.
+     *
+     * @param index the bucket index
+     * @return the lowest value of the bucket
+     */
+    static long lowestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        return (long) (SUB_BUCKETS + index % SUB_BUCKETS) << shift;
+    }
+
+    /**
+     * Gets the largest value falling into a bucket.
+     *
+     * @param index the bucket index
+     * @return the highest value of the bucket
+     */
+    static long highestValue(int index) {
+        if (index < SUB_BUCKETS)
+            return index;
+        int shift = index / SUB_BUCKETS - 1;
+        return lowestValue(index) + (1L << shift) - 1;
+    }
+}
@@ -0,0 +1,16 @@
+package com.httydcraft.lamp.telegram.metrics;
+
+/**
+ * Receives metric snapshots, e.g. to publish them to a monitoring system.
+ *
+ * @see CommandMetrics#addExporter(MetricsExporter)
+ */
+@FunctionalInterface
+public interface MetricsExporter {
+    /**
+     * Exports a metrics snapshot.
+     *
+     * @param snapshot the snapshot to export
+     */
+    void export(MetricsSnapshot snapshot);
+}
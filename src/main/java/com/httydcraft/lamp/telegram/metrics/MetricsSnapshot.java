@@ -0,0 +1,58 @@
+package com.httydcraft.lamp.telegram.metrics;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable point-in-time copy of all command metrics of a handler.
+ *
+ * @see CommandMetrics#snapshot()
+ */
+public final class MetricsSnapshot {
+    private final long timestamp;
+    private final long unknownCommands;
+    private final Map<String, CommandSnapshot> commands;
+
+    MetricsSnapshot(long timestamp, long unknownCommands, Map<String, CommandSnapshot> commands) {
+        this.timestamp = timestamp;
+        this.unknownCommands = unknownCommands;
+        this.commands = Collections.unmodifiableMap(commands);
+    }
+
+    /**
+     * Gets the time the snapshot was taken.
+     *
+     * @return the epoch timestamp in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    /**
+     * Gets how many dispatches did not resolve to any command.
+     *
+     * @return the unknown command count
+     */
+    public long getUnknownCommands() {
+        return unknownCommands;
+    }
+
+    /**
+     * Gets the metrics of every invoked command.
+     *
+     * @return an unmodifiable map of command names to their metrics
+     */
+    public Map<String, CommandSnapshot> getCommands() {
+        return commands;
+    }
+
+    /**
+     * Gets the metrics of a single command.
+     *
+     * @param name the command name
+     * @return the command metrics, or null if the command was never invoked
+     */
+    public CommandSnapshot getCommand(String name) {
+        return commands.get(name);
+    }
+}
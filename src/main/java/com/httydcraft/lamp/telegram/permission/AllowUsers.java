@@ -0,0 +1,27 @@
+package com.httydcraft.lamp.telegram.permission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts a command to the given users, e.g. to the owners of the bot.
+ * <pre>
+ * &#64;Command("shutdown")
+ * &#64;AllowUsers({123456789L, 987654321L})
+ * public void shutdown(TelegramActor actor) { ... }
+ * </pre>
+ *
+ * @see TelegramPermission
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface AllowUsers {
+    /**
+     * Gets the ids of the users allowed to run the command.
+     *
+     * @return the allowed user ids
+     */
+    long[] value();
+}
@@ -0,0 +1,21 @@
+package com.httydcraft.lamp.telegram.permission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Restricts a command to administrators and the creator of the chat, a shorthand for
+ * {@code @RequireStatus({creator, administrator})}. The administrators are resolved through the
+ * {@link com.httydcraft.lamp.telegram.profile.ChatMemberCache} of the handler, so a chat is only
+ * requested once per cache TTL. Private chats are not restricted, combine with
+ * {@link RequireChatType} to exclude them.
+ *
+ * @see com.httydcraft.lamp.telegram.profile.RequireStatus
+ * @see TelegramPermission
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequireAdmin {
+}
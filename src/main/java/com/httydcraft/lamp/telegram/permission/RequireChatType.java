@@ -0,0 +1,30 @@
+package com.httydcraft.lamp.telegram.permission;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.pengrad.telegrambot.model.Chat;
+
+/**
+ * Restricts a command to chats of the given types, e.g. to private chats. Sources without chat,
+ * like callbacks of inline messages, are denied.
+ * <pre>
+ * &#64;Command("settings")
+ * &#64;RequireChatType(Chat.Type.Private)
+ * public void settings(TelegramActor actor) { ... }
+ * </pre>
+ *
+ * @see TelegramPermission
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequireChatType {
+    /**
+     * Gets the chat types the command can be used in.
+     *
+     * @return the allowed chat types
+     */
+    Chat.Type[] value();
+}
@@ -0,0 +1,172 @@
+package com.httydcraft.lamp.telegram.permission;
+
+import java.util.Arrays;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.dispatch.DispatchSource;
+import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+import com.httydcraft.lamp.telegram.profile.ChatMemberCache;
+import com.pengrad.telegrambot.model.Chat;
+import com.pengrad.telegrambot.model.ChatMember;
+
+import revxrsal.commands.command.CommandActor;
+import revxrsal.commands.command.CommandPermission;
+
+/**
+ * The Telegram restrictions of a command, compiled once when the command is registered.
+ * Chat types and member statuses are kept as bit sets and user ids as a sorted array, so checking
+ * them costs a bit test and a binary search against the fields of the {@link DispatchSource}.
+ * The member status is checked last and only if everything else passed, from the
+ * {@link ChatMemberCache} without waiting for the Bot API: while the status of the actor is not
+ * cached yet the invocation is denied and the cache starts loading it, so a retry succeeds.
+ * Expired statuses keep answering while they are refreshed, so this only happens on the first
+ * contact with a chat. Request {@code chat_member} updates to keep the cache warm.
+ * <p>
+ * Lamp checks permissions before the arguments of a command are resolved and rejects denied
+ * invocations with a {@link revxrsal.commands.exception.NoPermissionException}. The exception
+ * handler of {@link com.httydcraft.lamp.telegram.core.TelegramHandler} asks the actor to retry
+ * instead of reporting a missing permission if the status was still loading, see {@link #isPending(CommandActor)}.
+ *
+ * @see TelegramPermissionReader
+ */
+public final class TelegramPermission implements CommandPermission {
+    /**
+     * Result of a check passing every restriction
+     */
+    private static final int ALLOWED = 0;
+
+    /**
+     * Result of a check failing a restriction
+     */
+    private static final int DENIED = 1;
+
+    /**
+     * Result of a check waiting for the member status of the actor
+     */
+    private static final int PENDING = 2;
+
+    /**
+     * Bit set of all chat types
+     */
+    private static final int ANY_CHAT_TYPE = (1 << Chat.Type.values().length) - 1;
+
+    /**
+     * Bit set of the statuses administrating a chat
+     */
+    private static final int ADMIN_STATUSES = 1 << ChatMember.Status.creator.ordinal()
+            | 1 << ChatMember.Status.administrator.ordinal();
+
+    /**
+     * Bit set of the allowed chat types indexed by ordinal
+     */
+    private final int chatTypes;
+
+    /**
+     * Sorted ids of the allowed users, null if all users are allowed
+     */
+    private final long[] users;
+
+    /**
+     * Bit set of the allowed member statuses indexed by ordinal, 0 if any member may run the command
+     */
+    private final int statuses;
+
+    /**
+     * The cache resolving member statuses
+     */
+    private final ChatMemberCache chatMembers;
+
+    /**
+     * Compiles the restrictions of a command.
+     *
+     * @param chatTypes the allowed chat types, or null if all chat types are allowed
+     * @param users the ids of the allowed users, or null if all users are allowed
+     * @param statuses the allowed member statuses, or null if any member is allowed
+     * @param chatMembers the cache resolving member statuses
+     */
+    public TelegramPermission(Chat.Type[] chatTypes, long[] users, ChatMember.Status[] statuses,
+            ChatMemberCache chatMembers) {
+        int mask = chatTypes == null ? ANY_CHAT_TYPE : 0;
+        if (chatTypes != null) {
+            for (Chat.Type type : chatTypes)
+                mask |= 1 << type.ordinal();
+        }
+        int statusMask = 0;
+        if (statuses != null) {
+            for (ChatMember.Status status : statuses)
+                statusMask |= 1 << status.ordinal();
+        }
+        this.chatTypes = mask;
+        this.users = users == null ? null : sorted(users);
+        this.statuses = statusMask;
+        this.chatMembers = chatMembers;
+    }
+
+    /**
+     * Checks whether an actor may run the command. Never waits for the Bot API, an actor whose
+     * member status is not cached yet is denied.
+     *
+     * @param actor the command actor
+     * @return true if the actor passes every restriction, false for actors other than {@link TelegramActor}
+     */
+    @Override
+    public boolean canExecute(@NotNull CommandActor actor) {
+        return check(actor) == ALLOWED;
+    }
+
+    /**
+     * Checks whether an actor is only denied because its member status is still loading.
+     *
+     * @param actor the command actor
+     * @return true if the actor passes every other restriction and its status is not cached yet
+     */
+    public boolean isPending(@NotNull CommandActor actor) {
+        return check(actor) == PENDING;
+    }
+
+    /**
+     * Checks the restrictions of the command for an actor.
+     *
+     * @param actor the command actor
+     * @return {@link #ALLOWED}, {@link #DENIED} or {@link #PENDING}
+     */
+    private int check(CommandActor actor) {
+        if (!(actor instanceof TelegramActor))
+            return DENIED;
+        TelegramActor telegramActor = (TelegramActor) actor;
+        DispatchSource source = telegramActor.getDispatchSource();
+        Chat.Type type = source.getChatType();
+        if (chatTypes != ANY_CHAT_TYPE && (type == null || (chatTypes & 1 << type.ordinal()) == 0))
+            return DENIED;
+        if (users != null && (source.getAuthor() == null || Arrays.binarySearch(users, telegramActor.getId()) < 0))
+            return DENIED;
+        if (statuses == 0 || type == Chat.Type.Private)
+            return ALLOWED;
+        Identificator chat = source.getChatIdentficator();
+        if (chat == null || !chat.isLong() || source.getAuthor() == null)
+            return DENIED;
+        if (statuses == ADMIN_STATUSES) {
+            // one administrator list per chat answers for all of its users
+            Boolean admin = chatMembers.peekAdministrator(telegramActor.getBot(), chat.asLong(), telegramActor.getId());
+            return admin == null ? PENDING : admin ? ALLOWED : DENIED;
+        }
+        ChatMember.Status status = chatMembers.peekStatus(telegramActor.getBot(), chat.asLong(), telegramActor.getId());
+        if (status == null)
+            return PENDING;
+        return (statuses & 1 << status.ordinal()) != 0 ? ALLOWED : DENIED;
+    }
+
+    /**
+     * Copies and sorts user ids for binary search.
+     *
+     * @param users the user ids
+     * @return the sorted copy
+     */
+    private static long[] sorted(long[] users) {
+        long[] copy = users.clone();
+        Arrays.sort(copy);
+        return copy;
+    }
+}
@@ -0,0 +1,68 @@
+package com.httydcraft.lamp.telegram.permission;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import com.httydcraft.lamp.telegram.profile.ChatMemberCache;
+import com.httydcraft.lamp.telegram.profile.RequireStatus;
+import com.pengrad.telegrambot.model.ChatMember;
+
+import revxrsal.commands.command.CommandPermission;
+import revxrsal.commands.command.ExecutableCommand;
+import revxrsal.commands.process.PermissionReader;
+
+/**
+ * Compiles the {@link RequireChatType}, {@link RequireAdmin}, {@link RequireStatus} and
+ * {@link AllowUsers} annotations of commands into a {@link TelegramPermission}. Registered on every
+ * {@link com.httydcraft.lamp.telegram.core.TelegramHandler}. {@link RequireAdmin} allows the
+ * creator and administrator statuses in addition to the statuses of {@link RequireStatus}.
+ *
+ * @see TelegramPermission
+ */
+public class TelegramPermissionReader implements PermissionReader {
+    /**
+     * The cache resolving member statuses
+     */
+    private final ChatMemberCache chatMembers;
+
+    /**
+     * Creates a new permission reader.
+     *
+     * @param chatMembers the cache resolving member statuses
+     */
+    public TelegramPermissionReader(ChatMemberCache chatMembers) {
+        this.chatMembers = chatMembers;
+    }
+
+    /**
+     * Compiles the Telegram restrictions of a command.
+     *
+     * @param command the registered command
+     * @return the compiled permission, or null if the command has no Telegram restrictions
+     * @throws IllegalArgumentException if {@link RequireStatus} lists no status
+     */
+    @Override
+    public @Nullable CommandPermission getPermission(@NotNull ExecutableCommand command) {
+        RequireChatType chatType = command.getAnnotation(RequireChatType.class);
+        AllowUsers users = command.getAnnotation(AllowUsers.class);
+        RequireStatus status = command.getAnnotation(RequireStatus.class);
+        boolean admin = command.hasAnnotation(RequireAdmin.class);
+        if (chatType == null && users == null && status == null && !admin)
+            return null;
+        if (status != null && status.value().length == 0)
+            throw new IllegalArgumentException("@RequireStatus of " + command.getPath().toRealString()
+                    + " lists no status");
+        Set<ChatMember.Status> statuses = EnumSet.noneOf(ChatMember.Status.class);
+        if (status != null)
+            statuses.addAll(Arrays.asList(status.value()));
+        if (admin)
+            Collections.addAll(statuses, ChatMember.Status.creator, ChatMember.Status.administrator);
+        return new TelegramPermission(chatType != null ? chatType.value() : null, users != null ? users.value() : null,
+                statuses.isEmpty() ? null : statuses.toArray(new ChatMember.Status[0]), chatMembers);
+    }
+}
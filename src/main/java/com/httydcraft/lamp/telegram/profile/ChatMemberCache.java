@@ -0,0 +1,466 @@
+package com.httydcraft.lamp.telegram.profile;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.TelegramCommandHandler;
+import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.ChatMember;
+import com.pengrad.telegrambot.model.ChatMemberUpdated;
+import com.pengrad.telegrambot.request.GetChatAdministrators;
+import com.pengrad.telegrambot.request.GetChatMember;
+import com.pengrad.telegrambot.response.BaseResponse;
+
+/**
+ * Read-through cache of {@code getChatMember} and {@code getChatAdministrators} results.
+ * Concurrent misses of the same key share a single Bot API request, results expire after
+ * a TTL and are refreshed by the {@code chat_member} and {@code my_chat_member} updates the
+ * handler receives. Telegram only sends {@code chat_member} updates if they are listed in the
+ * allowed updates, see {@link com.httydcraft.lamp.telegram.ingest.UpdateIngestionEngine#setAllowedUpdates(String...)}.
+ * <p>
+ * Permission checks must not wait for the Bot API, so they use the {@code peek} methods, which
+ * answer from the cache only. An expired result is still answered while it is refreshed in the
+ * background, and a miss starts loading the result for the next check. Expired results are kept
+ * for that purpose and only evicted once the cache holds more than its maximum size.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#getChatMembers()
+ * @see RequireStatus
+ */
+public class ChatMemberCache {
+    /**
+     * Default time results are cached for, in seconds
+     */
+    public static final long DEFAULT_TTL_SECONDS = 60;
+
+    /**
+     * Default amount of cached results beyond which expired results are evicted
+     */
+    public static final int DEFAULT_MAX_SIZE = 100_000;
+
+    /**
+     * Amount of misses between sweeps of expired results
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    /**
+     * The handler executing the requests
+     */
+    private final TelegramCommandHandler handler;
+
+    /**
+     * Time results are cached for, in nanoseconds
+     */
+    private final long ttlNanos;
+
+    /**
+     * Amount of cached results beyond which expired results are evicted
+     */
+    private final int maxSize;
+
+    /**
+     * Members indexed by chat and user
+     */
+    private final Map<MemberKey, Entry<ChatMember>> members = new ConcurrentHashMap<>();
+
+    /**
+     * Administrator lists indexed by chat
+     */
+    private final Map<Long, Entry<List<ChatMember>>> administrators = new ConcurrentHashMap<>();
+
+    /**
+     * Misses since the last sweep
+     */
+    private final AtomicInteger misses = new AtomicInteger();
+
+    /**
+     * Creates a new cache keeping results for {@link #DEFAULT_TTL_SECONDS} seconds.
+     *
+     * @param handler the handler executing the requests
+     */
+    public ChatMemberCache(TelegramCommandHandler handler) {
+        this(handler, DEFAULT_TTL_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Creates a new cache keeping up to {@link #DEFAULT_MAX_SIZE} results.
+     *
+     * @param handler the handler executing the requests
+     * @param ttl the time results are cached for
+     * @param unit the unit of the ttl
+     */
+    public ChatMemberCache(TelegramCommandHandler handler, long ttl, TimeUnit unit) {
+        this(handler, ttl, unit, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Creates a new cache.
+     *
+     * @param handler the handler executing the requests
+     * @param ttl the time results are cached for
+     * @param unit the unit of the ttl
+     * @param maxSize the amount of cached results beyond which expired results are evicted
+     */
+    public ChatMemberCache(TelegramCommandHandler handler, long ttl, TimeUnit unit, int maxSize) {
+        this.handler = handler;
+        this.ttlNanos = unit.toNanos(ttl);
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Gets the membership of the actor in the chat of its command.
+     *
+     * @param actor the actor
+     * @return a future of the member, completed with null if the command has no chat with a numeric id
+     */
+    public CompletableFuture<ChatMember> getMember(TelegramActor actor) {
+        Identificator chat = actor.getDispatchSource().getChatIdentficator();
+        if (chat == null || !chat.isLong())
+            return CompletableFuture.completedFuture(null);
+        return getMember(actor.getBot(), chat.asLong(), actor.getId());
+    }
+
+    /**
+     * Gets the membership of a user in a chat.
+     *
+     * @param bot the bot to request the membership with if it is not cached
+     * @param chatId the chat id
+     * @param userId the user id
+     * @return a future of the member, completed exceptionally if the request failed
+     */
+    public CompletableFuture<ChatMember> getMember(TelegramBot bot, long chatId, long userId) {
+        return lookup(members, new MemberKey(chatId, userId),
+                () -> handler.executeAsync(bot, new GetChatMember(chatId, userId))
+                        .thenApply(response -> checked(response, "getChatMember").chatMember()));
+    }
+
+    /**
+     * Gets the administrators of a chat.
+     *
+     * @param bot the bot to request the administrators with if they are not cached
+     * @param chatId the chat id
+     * @return a future of the administrators, completed exceptionally if the request failed
+     */
+    public CompletableFuture<List<ChatMember>> getAdministrators(TelegramBot bot, long chatId) {
+        return lookup(administrators, chatId,
+                () -> handler.executeAsync(bot, new GetChatAdministrators(chatId))
+                        .thenApply(response -> checked(response, "getChatAdministrators").administrators()));
+    }
+
+    /**
+     * Checks whether a user administrates a chat. A cached membership of the user answers right away,
+     * otherwise the cached administrators of the chat are used, so a single request serves all
+     * users of a chat.
+     *
+     * @param bot the bot to request the administrators with if they are not cached
+     * @param chatId the chat id
+     * @param userId the user id
+     * @return a future completed with true if the user is an administrator or the creator of the chat
+     */
+    public CompletableFuture<Boolean> isAdministrator(TelegramBot bot, long chatId, long userId) {
+        Entry<ChatMember> entry = members.get(new MemberKey(chatId, userId));
+        if (entry != null && !entry.isExpired(System.nanoTime()) && entry.future.isDone()
+                && !entry.future.isCompletedExceptionally())
+            return CompletableFuture.completedFuture(isAdministrator(entry.future.join()));
+        return getAdministrators(bot, chatId).thenApply(admins -> {
+            for (ChatMember admin : admins) {
+                if (admin.user() != null && admin.user().id() == userId)
+                    return true;
+            }
+            return false;
+        });
+    }
+
+    /**
+     * Gets the cached status of a user in a chat without waiting for the Bot API. The cached
+     * administrators of the chat answer for administrators and the creator.
+     *
+     * @param bot the bot to load the membership with if it is not cached or expired
+     * @param chatId the chat id
+     * @param userId the user id
+     * @return the status, or null if it is not cached yet
+     */
+    public ChatMember.Status peekStatus(TelegramBot bot, long chatId, long userId) {
+        long now = System.nanoTime();
+        MemberKey key = new MemberKey(chatId, userId);
+        Entry<ChatMember> entry = members.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            Entry<List<ChatMember>> admins = administrators.get(chatId);
+            ChatMember admin = admins == null || admins.isExpired(now) ? null : find(admins.value(), userId);
+            if (admin != null)
+                return admin.status();
+        }
+        ChatMember member = peek(members, key, () -> handler.executeAsync(bot, new GetChatMember(chatId, userId))
+                .thenApply(response -> checked(response, "getChatMember").chatMember()));
+        return member != null ? member.status() : null;
+    }
+
+    /**
+     * Checks whether a user administrates a chat without waiting for the Bot API. A cached
+     * membership of the user answers first, then the cached administrators of the chat.
+     *
+     * @param bot the bot to load the administrators with if they are not cached or expired
+     * @param chatId the chat id
+     * @param userId the user id
+     * @return whether the user is an administrator or the creator, or null if it is not cached yet
+     */
+    public Boolean peekAdministrator(TelegramBot bot, long chatId, long userId) {
+        Entry<ChatMember> entry = members.get(new MemberKey(chatId, userId));
+        ChatMember member = entry == null || entry.isExpired(System.nanoTime()) ? null : entry.value();
+        if (member != null)
+            return isAdministrator(member);
+        List<ChatMember> admins = peek(administrators, chatId,
+                () -> handler.executeAsync(bot, new GetChatAdministrators(chatId))
+                        .thenApply(response -> checked(response, "getChatAdministrators").administrators()));
+        return admins == null ? null : find(admins, userId) != null;
+    }
+
+    /**
+     * Applies a membership change, replacing the cached member and dropping the cached
+     * administrators of the chat if the user gained or lost administrator rights.
+     *
+     * @param update the chat member update
+     */
+    public void onChatMemberUpdated(ChatMemberUpdated update) {
+        ChatMember member = update.newChatMember();
+        if (update.chat() == null || member == null || member.user() == null)
+            return;
+        long chatId = update.chat().id();
+        Entry<ChatMember> entry = new Entry<>(System.nanoTime() + ttlNanos);
+        entry.future.complete(member);
+        members.put(new MemberKey(chatId, member.user().id()), entry);
+        if (isAdministrator(member) || isAdministrator(update.oldChatMember()))
+            administrators.remove(chatId);
+    }
+
+    /**
+     * Drops the cached membership of a user.
+     *
+     * @param chatId the chat id
+     * @param userId the user id
+     */
+    public void invalidate(long chatId, long userId) {
+        members.remove(new MemberKey(chatId, userId));
+    }
+
+    /**
+     * Drops the cached administrators and memberships of a chat.
+     *
+     * @param chatId the chat id
+     */
+    public void invalidateChat(long chatId) {
+        administrators.remove(chatId);
+        members.keySet().removeIf(key -> key.chat == chatId);
+    }
+
+    /**
+     * Gets the amount of cached memberships and administrator lists.
+     *
+     * @return the amount of cached results, including expired results kept to answer stale checks
+     */
+    public int size() {
+        return members.size() + administrators.size();
+    }
+
+    /**
+     * Checks whether a member is an administrator or the creator of its chat.
+     *
+     * @param member the member, may be null
+     * @return true if the member administrates the chat
+     */
+    static boolean isAdministrator(ChatMember member) {
+        return member != null && (member.status() == ChatMember.Status.administrator
+                || member.status() == ChatMember.Status.creator);
+    }
+
+    /**
+     * Finds a user in a list of members.
+     *
+     * @param members the members, may be null
+     * @param userId the user id
+     * @return the member, or null if the user is not listed
+     */
+    private static ChatMember find(List<ChatMember> members, long userId) {
+        if (members == null)
+            return null;
+        for (ChatMember member : members) {
+            if (member.user() != null && member.user().id() == userId)
+                return member;
+        }
+        return null;
+    }
+
+    /**
+     * Gets a cached result without waiting, starting to load it if it is missing or expired.
+     *
+     * @param <K> the key type
+     * @param <V> the result type
+     * @param cache the cache
+     * @param key the key
+     * @param loader starts the request
+     * @return the cached result, the expired result while it is refreshed, or null if nothing was loaded yet
+     */
+    private <K, V> V peek(Map<K, Entry<V>> cache, K key, Supplier<CompletableFuture<V>> loader) {
+        Entry<V> entry = cache.get(key);
+        if (entry == null || entry.isExpired(System.nanoTime()))
+            entry = load(cache, key, loader);
+        return entry.value();
+    }
+
+    /**
+     * Gets a cached result, sharing a single request between concurrent misses.
+     *
+     * @param <K> the key type
+     * @param <V> the result type
+     * @param cache the cache
+     * @param key the key
+     * @param loader starts the request
+     * @return a future of the result
+     */
+    private <K, V> CompletableFuture<V> lookup(Map<K, Entry<V>> cache, K key, Supplier<CompletableFuture<V>> loader) {
+        return load(cache, key, loader).future;
+    }
+
+    /**
+     * Gets the entry of a key, replacing a missing or expired entry with a loading one that keeps
+     * the expired result until the new one arrived, or until the next attempt if loading failed.
+     *
+     * @param <K> the key type
+     * @param <V> the result type
+     * @param cache the cache
+     * @param key the key
+     * @param loader starts the request
+     * @return the current entry
+     */
+    private <K, V> Entry<V> load(Map<K, Entry<V>> cache, K key, Supplier<CompletableFuture<V>> loader) {
+        long now = System.nanoTime();
+        Entry<V> entry = cache.get(key);
+        if (entry != null && !entry.isExpired(now))
+            return entry;
+        Entry<V> candidate = new Entry<>(now + ttlNanos);
+        entry = cache.compute(key, (k, current) -> {
+            if (current != null && !current.isExpired(now))
+                return current;
+            candidate.stale = current == null ? null : current.value();
+            return candidate;
+        });
+        if (entry != candidate)
+            return entry;
+        if (misses.incrementAndGet() % SWEEP_INTERVAL == 0)
+            sweep(now);
+        loader.get().whenComplete((value, failure) -> {
+            if (failure == null) {
+                candidate.future.complete(value);
+                candidate.stale = null;
+                return;
+            }
+            if (candidate.stale == null) {
+                cache.remove(key, candidate);
+            } else {
+                // an expired entry keeps serving the stale result and is retried on the next lookup
+                Entry<V> failed = new Entry<>(System.nanoTime());
+                failed.stale = candidate.stale;
+                failed.future.completeExceptionally(failure);
+                cache.replace(key, candidate, failed);
+            }
+            candidate.future.completeExceptionally(failure);
+        });
+        return candidate;
+    }
+
+    /**
+     * Removes the expired results if the cache holds more than its maximum size.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    private void sweep(long now) {
+        if (size() <= maxSize)
+            return;
+        members.values().removeIf(entry -> entry.isExpired(now));
+        administrators.values().removeIf(entry -> entry.isExpired(now));
+    }
+
+    /**
+     * Fails on an unsuccessful response.
+     *
+     * @param <R> the response type
+     * @param response the response
+     * @param method the Bot API method
+     * @return the response
+     * @throws CompletionException if Telegram reported an error
+     */
+    private static <R extends BaseResponse> R checked(R response, String method) {
+        if (!response.isOk())
+            throw new CompletionException(new IllegalStateException(method + " failed: " + response.errorCode()
+                    + " " + response.description()));
+        return response;
+    }
+
+    /**
+     * A cached or loading result.
+     */
+    private static final class Entry<V> {
+        private final CompletableFuture<V> future = new CompletableFuture<>();
+        private final long expiresAt;
+
+        /**
+         * The expired result this entry replaces, answered until the entry loaded successfully
+         */
+        private volatile V stale;
+
+        Entry(long expiresAt) {
+            this.expiresAt = expiresAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expiresAt >= 0;
+        }
+
+        /**
+         * Gets the result without waiting.
+         *
+         * @return the loaded result, the replaced expired result while loading or after a failed
+         *         refresh, or null
+         */
+        V value() {
+            if (future.isDone() && !future.isCompletedExceptionally())
+                return future.join();
+            return stale;
+        }
+    }
+
+    /**
+     * Key of a user within a chat.
+     */
+    private static final class MemberKey {
+        private final long chat;
+        private final long user;
+
+        MemberKey(long chat, long user) {
+            this.chat = chat;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof MemberKey))
+                return false;
+            MemberKey other = (MemberKey) o;
+            return chat == other.chat && user == other.user;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * Long.hashCode(chat) + Long.hashCode(user);
+        }
+    }
+}
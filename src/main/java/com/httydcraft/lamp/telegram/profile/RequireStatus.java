@@ -0,0 +1,29 @@
+package com.httydcraft.lamp.telegram.profile;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+import com.pengrad.telegrambot.model.ChatMember;
+
+/**
+ * Restricts a command to members of the chat with one of the given statuses. Compiled into the
+ * {@link com.httydcraft.lamp.telegram.permission.TelegramPermission} of the command together with
+ * the other restrictions, {@link com.httydcraft.lamp.telegram.permission.RequireAdmin} adds the
+ * creator and administrator statuses. Statuses are taken from the {@link ChatMemberCache} of the
+ * handler without waiting for the Bot API, a user whose status is not cached yet is denied
+ * until it was loaded. Commands in private chats are not restricted.
+ *
+ * @see com.httydcraft.lamp.telegram.permission.TelegramPermissionReader
+ */
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RequireStatus {
+    /**
+     * Gets the statuses allowed to run the command. At least one status must be given.
+     *
+     * @return the allowed statuses
+     */
+    ChatMember.Status[] value();
+}
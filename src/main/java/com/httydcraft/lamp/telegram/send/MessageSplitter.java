@@ -0,0 +1,87 @@
+package com.httydcraft.lamp.telegram.send;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits text into chunks fitting into a single Telegram message.
+ * Chunks end at the last line break, or else the last whitespace, before the limit and
+ * never in the middle of a surrogate pair.
+ */
+public final class MessageSplitter {
+    /**
+     * Maximum length of a Telegram text message, in UTF-16 code units
+     */
+    public static final int MAX_MESSAGE_LENGTH = 4096;
+
+    private MessageSplitter() {
+    }
+
+    /**
+     * Splits text into chunks of at most {@link #MAX_MESSAGE_LENGTH} characters.
+     *
+     * @param text the text to split
+     * @return the chunks, a single chunk if the text already fits
+     */
+    public static List<String> split(CharSequence text) {
+        return split(text, MAX_MESSAGE_LENGTH);
+    }
+
+    /**
+     * Splits text into chunks of at most the given length.
+     *
+     * @param text the text to split
+     * @param limit the maximum chunk length, at least 2
+     * @return the chunks, a single chunk if the text already fits
+     * @throws IllegalArgumentException if limit is less than 2
+     */
+    public static List<String> split(CharSequence text, int limit) {
+        if (limit < 2)
+            throw new IllegalArgumentException("limit must be at least 2");
+        List<String> chunks = new ArrayList<>(text.length() / limit + 1);
+        int start = 0;
+        while (text.length() - start > limit) {
+            int end = findBoundary(text, start, start + limit);
+            chunks.add(text.subSequence(start, end).toString());
+            start = skipSeparator(text, end);
+        }
+        if (start < text.length() || chunks.isEmpty())
+            chunks.add(text.subSequence(start, text.length()).toString());
+        return chunks;
+    }
+
+    /**
+     * Finds the end of the chunk starting at {@code start}.
+     *
+     * @param text the text being split
+     * @param start the chunk start
+     * @param max the exclusive maximum chunk end, less than the text length
+     * @return the chunk end
+     */
+    static int findBoundary(CharSequence text, int start, int max) {
+        int whitespace = -1;
+        for (int i = max; i > start; i--) {
+            char c = text.charAt(i);
+            if (c == '\n')
+                return i;
+            if (whitespace < 0 && Character.isWhitespace(c))
+                whitespace = i;
+        }
+        if (whitespace > start)
+            return whitespace;
+        if (Character.isLowSurrogate(text.charAt(max)) && Character.isHighSurrogate(text.charAt(max - 1)))
+            return max - 1;
+        return max;
+    }
+
+    /**
+     * Skips the line break or whitespace a chunk was split at, so the next chunk does not start with it.
+     *
+     * @param text the text being split
+     * @param index the end of the previous chunk
+     * @return the start of the next chunk
+     */
+    static int skipSeparator(CharSequence text, int index) {
+        return index < text.length() && Character.isWhitespace(text.charAt(index)) ? index + 1 : index;
+    }
+}
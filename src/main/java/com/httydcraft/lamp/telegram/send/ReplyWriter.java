@@ -0,0 +1,191 @@
+package com.httydcraft.lamp.telegram.send;
+
+import java.io.Writer;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+
+/**
+ * Writer streaming large output to an actor as consecutive messages. Text is buffered until it
+ * exceeds the message length limit, then everything up to the last line break (or whitespace)
+ * before the limit is sent, so at most one message worth of text is held in memory regardless
+ * of the output size. Chunks are split like {@link MessageSplitter} splits text.
+ * <pre>
+ * try (ReplyWriter writer = actor.replyWriter()) {
+ *     for (Entry entry : log)
+ *         writer.append(entry.format()).append('\n');
+ * }
+ * </pre>
+ * Not thread-safe.
+ *
+ * @see TelegramActor#replyWriter()
+ */
+public class ReplyWriter extends Writer {
+    /**
+     * The actor receiving the messages
+     */
+    private final TelegramActor actor;
+
+    /**
+     * Maximum length of a message, excluding the message prefix of the handler
+     */
+    private final int limit;
+
+    /**
+     * Text written but not sent yet
+     */
+    private final StringBuilder buffer;
+
+    /**
+     * Whether the writer was closed
+     */
+    private boolean closed;
+
+    /**
+     * Creates a writer sending messages of at most {@link MessageSplitter#MAX_MESSAGE_LENGTH} characters,
+     * including the message prefix of the handler.
+     *
+     * @param actor the actor receiving the messages
+     */
+    public ReplyWriter(TelegramActor actor) {
+        this(actor, MessageSplitter.MAX_MESSAGE_LENGTH - actor.getCommandHandler().getMessagePrefix().length());
+    }
+
+    /**
+     * Creates a writer sending messages of at most the given length.
+     *
+     * @param actor the actor receiving the messages
+     * @param limit the maximum message length excluding the message prefix, at least 2
+     * @throws IllegalArgumentException if limit is less than 2
+     */
+    public ReplyWriter(TelegramActor actor, int limit) {
+        if (limit < 2)
+            throw new IllegalArgumentException("limit must be at least 2");
+        this.actor = actor;
+        this.limit = limit;
+        this.buffer = new StringBuilder(Math.min(limit, 1024));
+    }
+
+    /**
+     * Writes characters, sending every message the buffered text fills.
+     *
+     * @param chars the characters
+     * @param offset the offset of the first character
+     * @param length the amount of characters
+     * @throws IllegalStateException if the writer is closed
+     */
+    @Override
+    public void write(char[] chars, int offset, int length) {
+        ensureOpen();
+        buffer.append(chars, offset, length);
+        drain();
+    }
+
+    /**
+     * Writes a string, sending every message the buffered text fills.
+     *
+     * @param text the string
+     * @param offset the offset of the first character
+     * @param length the amount of characters
+     * @throws IllegalStateException if the writer is closed
+     */
+    @Override
+    public void write(String text, int offset, int length) {
+        ensureOpen();
+        buffer.append(text, offset, offset + length);
+        drain();
+    }
+
+    /**
+     * Appends a character sequence without copying it into a string first.
+     *
+     * @param text the character sequence, "null" if null
+     * @return this writer
+     * @throws IllegalStateException if the writer is closed
+     */
+    @Override
+    public ReplyWriter append(CharSequence text) {
+        ensureOpen();
+        buffer.append(text);
+        drain();
+        return this;
+    }
+
+    /**
+     * Appends a character.
+     *
+     * @param c the character
+     * @return this writer
+     * @throws IllegalStateException if the writer is closed
+     */
+    @Override
+    public ReplyWriter append(char c) {
+        ensureOpen();
+        buffer.append(c);
+        drain();
+        return this;
+    }
+
+    /**
+     * Sends the buffered text as a message of its own, even if it does not fill a message.
+     * The text is sent as written, only a buffer of nothing but whitespace is dropped.
+     * Avoid auto-flushing wrappers like {@code new PrintWriter(writer, true)}, which would send every line separately.
+     */
+    @Override
+    public void flush() {
+        if (buffer.length() == 0)
+            return;
+        if (hasText(0, buffer.length()))
+            actor.reply(buffer.toString());
+        buffer.setLength(0);
+        actor.flush();
+    }
+
+    /**
+     * Sends the remaining text. Further writes fail.
+     */
+    @Override
+    public void close() {
+        if (closed)
+            return;
+        flush();
+        closed = true;
+    }
+
+    /**
+     * Sends the full messages of the buffer, keeping the rest for later writes.
+     */
+    private void drain() {
+        int start = 0;
+        while (buffer.length() - start > limit) {
+            int end = MessageSplitter.findBoundary(buffer, start, start + limit);
+            if (hasText(start, end))
+                actor.reply(buffer.substring(start, end));
+            start = MessageSplitter.skipSeparator(buffer, end);
+        }
+        if (start > 0)
+            buffer.delete(0, start);
+    }
+
+    /**
+     * Checks whether a range of the buffer contains more than whitespace, which Telegram rejects.
+     *
+     * @param start the start of the range
+     * @param end the exclusive end of the range
+     * @return true if the range can be sent
+     */
+    private boolean hasText(int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (!Character.isWhitespace(buffer.charAt(i)))
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Fails if the writer is closed.
+     */
+    private void ensureOpen() {
+        if (closed)
+            throw new IllegalStateException("ReplyWriter is closed");
+    }
+}
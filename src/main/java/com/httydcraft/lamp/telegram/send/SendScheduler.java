@@ -0,0 +1,412 @@
+package com.httydcraft.lamp.telegram.send;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.pengrad.telegrambot.Callback;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.request.BaseRequest;
+import com.pengrad.telegrambot.response.BaseResponse;
+
+/**
+ * Outbound request scheduler honoring the Telegram flood limits. Every chat gets its own
+ * token bucket and FIFO lane with at most one request in flight, all chats share a global
+ * token bucket. Requests rejected with HTTP 429 are put back at the head of their lane, and
+ * both the lane and the global bucket are paused for the {@code retry_after} reported by
+ * Telegram, since the flood limit may have been hit across all chats.
+ * <p>
+ * Only requests posting to a chat ({@code send*}, {@code forward*}, {@code copy*} and
+ * {@code edit*} methods with a {@code chat_id}) are scheduled, see {@link #isRateLimited(BaseRequest)}.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#setSendScheduler(SendScheduler)
+ */
+public class SendScheduler implements AutoCloseable {
+    /**
+     * Default amount of messages per second across all chats
+     */
+    public static final double DEFAULT_GLOBAL_RATE = 30;
+
+    /**
+     * Default amount of messages per second in a private chat
+     */
+    public static final double DEFAULT_CHAT_RATE = 1;
+
+    /**
+     * Default amount of messages per second in a group or channel (20 per minute)
+     */
+    public static final double DEFAULT_GROUP_RATE = 20 / 60.0;
+
+    /**
+     * How often a request is put back after HTTP 429 before its response is returned as is
+     */
+    private static final int MAX_RETRIES = 3;
+
+    /**
+     * Interval of forgetting idle chat lanes, in nanoseconds
+     */
+    private static final long SWEEP_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+    private static final int TOO_MANY_REQUESTS = 429;
+
+    private final TelegramBot bot;
+    private final double chatRate;
+    private final double groupRate;
+    private final TokenBucket globalBucket;
+
+    /**
+     * Lanes of all chats with recent activity, guarded by {@link #lock}
+     */
+    private final Map<Object, ChatLane> lanes = new HashMap<>();
+
+    /**
+     * Lanes allowed to send right away, in round-robin order
+     */
+    private final ArrayDeque<ChatLane> ready = new ArrayDeque<>();
+
+    /**
+     * Lanes waiting for their chat bucket or a retry_after pause
+     */
+    private final PriorityQueue<ChatLane> delayed = new PriorityQueue<>(
+            Comparator.comparingLong(lane -> lane.eligibleAt));
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Thread thread;
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder sent = new LongAdder();
+    private final LongAdder throttled = new LongAdder();
+    private volatile boolean running = true;
+    private long lastSweep;
+
+    /**
+     * Time until no lane may send after a global retry_after pause, guarded by {@link #lock}
+     */
+    private long globalBlockedUntil;
+
+    /**
+     * Creates a scheduler with the default Telegram limits.
+     *
+     * @param bot the bot sending the requests
+     */
+    public SendScheduler(TelegramBot bot) {
+        this(bot, DEFAULT_GLOBAL_RATE, DEFAULT_CHAT_RATE, DEFAULT_GROUP_RATE);
+    }
+
+    /**
+     * Creates a new send scheduler.
+     *
+     * @param bot the bot sending the requests
+     * @param globalRate the amount of requests per second across all chats
+     * @param chatRate the amount of requests per second in a private chat
+     * @param groupRate the amount of requests per second in a group or channel
+     * @throws IllegalArgumentException if any rate is not positive
+     */
+    public SendScheduler(TelegramBot bot, double globalRate, double chatRate, double groupRate) {
+        if (globalRate <= 0 || chatRate <= 0 || groupRate <= 0)
+            throw new IllegalArgumentException("Rates must be positive");
+        long now = System.nanoTime();
+        this.bot = bot;
+        this.chatRate = chatRate;
+        this.groupRate = groupRate;
+        this.globalBucket = new TokenBucket(globalRate, globalRate, now);
+        this.lastSweep = now;
+        this.globalBlockedUntil = now;
+        this.thread = new Thread(this::run, "telegram-send-scheduler");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Checks whether a request is subject to the flood limits and should go through this scheduler.
+     *
+     * @param request the request to check
+     * @return true if the request posts to a chat
+     */
+    public static boolean isRateLimited(BaseRequest<?, ?> request) {
+        if (!request.getParameters().containsKey("chat_id"))
+            return false;
+        String method = request.getMethod();
+        return method.startsWith("send") || method.startsWith("forward") || method.startsWith("copy")
+                || method.startsWith("edit");
+    }
+
+    /**
+     * Queues a request behind the previous requests of its chat.
+     *
+     * @param <T> the request type
+     * @param <R> the response type
+     * @param request the request to send, must have a chat_id
+     * @return a future of the response, completed exceptionally if the request could not be sent
+     * @throws IllegalArgumentException if the request has no chat_id
+     */
+    public <T extends BaseRequest<T, R>, R extends BaseResponse> CompletableFuture<R> submit(T request) {
+        Object chatId = request.getParameters().get("chat_id");
+        if (chatId == null)
+            throw new IllegalArgumentException("Request " + request.getMethod() + " has no chat_id");
+        PendingRequest<T, R> pendingRequest = new PendingRequest<>(request);
+        lock.lock();
+        try {
+            if (!running) {
+                pendingRequest.future.completeExceptionally(new RejectedExecutionException("Send scheduler is closed"));
+                return pendingRequest.future;
+            }
+            long now = System.nanoTime();
+            ChatLane lane = lanes.get(chatId);
+            if (lane == null) {
+                lane = new ChatLane(new TokenBucket(isGroup(chatId) ? groupRate : chatRate, 1, now), now);
+                lanes.put(chatId, lane);
+            }
+            lane.queue.addLast(pendingRequest);
+            pending.incrementAndGet();
+            if (!lane.inFlight && !lane.scheduled)
+                schedule(lane, now);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return pendingRequest.future;
+    }
+
+    /**
+     * Gets the amount of requests waiting to be sent.
+     *
+     * @return the pending request count
+     */
+    public int getPendingCount() {
+        return pending.get();
+    }
+
+    /**
+     * Gets the amount of requests sent so far, including retries.
+     *
+     * @return the sent request count
+     */
+    public long getSentCount() {
+        return sent.sum();
+    }
+
+    /**
+     * Gets how often Telegram answered with HTTP 429.
+     *
+     * @return the throttled response count
+     */
+    public long getThrottledCount() {
+        return throttled.sum();
+    }
+
+    /**
+     * Stops the scheduler. Requests that were not sent yet are completed exceptionally.
+     */
+    @Override
+    public void close() {
+        List<PendingRequest<?, ?>> rejected = new ArrayList<>();
+        lock.lock();
+        try {
+            if (!running)
+                return;
+            running = false;
+            for (ChatLane lane : lanes.values())
+                rejected.addAll(lane.queue);
+            lanes.clear();
+            pending.set(0);
+            ready.clear();
+            delayed.clear();
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        for (PendingRequest<?, ?> request : rejected)
+            request.future.completeExceptionally(new RejectedExecutionException("Send scheduler is closed"));
+    }
+
+    /**
+     * Scheduler loop, hands requests to the HTTP client as soon as both buckets allow it.
+     */
+    private void run() {
+        lock.lock();
+        try {
+            while (running) {
+                long now = System.nanoTime();
+                while (!delayed.isEmpty() && delayed.peek().eligibleAt <= now)
+                    ready.addLast(delayed.poll());
+                long wait;
+                if (!ready.isEmpty()) {
+                    wait = Math.max(globalBlockedUntil - now, globalBucket.nanosUntilAvailable(now));
+                    if (wait <= 0) {
+                        sendNext(ready.pollFirst(), now);
+                        continue;
+                    }
+                } else {
+                    wait = delayed.isEmpty() ? SWEEP_INTERVAL : delayed.peek().eligibleAt - now;
+                }
+                if (now - lastSweep >= SWEEP_INTERVAL)
+                    sweep(now);
+                changed.awaitNanos(wait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends the head request of a ready lane, or delays the lane if its chat bucket ran dry.
+     *
+     * @param lane the lane to send from
+     * @param now the current time in nanoseconds
+     */
+    private void sendNext(ChatLane lane, long now) {
+        lane.scheduled = false;
+        if (!lane.bucket.tryAcquire(now)) {
+            schedule(lane, now);
+            return;
+        }
+        globalBucket.tryAcquire(now);
+        lane.inFlight = true;
+        sent.increment();
+        send(lane, lane.queue.peekFirst());
+    }
+
+    private <T extends BaseRequest<T, R>, R extends BaseResponse> void send(ChatLane lane,
+            PendingRequest<T, R> request) {
+        bot.execute(request.request, new Callback<T, R>() {
+            @Override
+            public void onResponse(T ignored, R response) {
+                Integer retryAfter = response.parameters() != null ? response.parameters().retryAfter() : null;
+                if (!response.isOk() && response.errorCode() == TOO_MANY_REQUESTS && request.attempts < MAX_RETRIES) {
+                    throttled.increment();
+                    request.attempts++;
+                    release(lane, retryAfter != null ? retryAfter : 1, null);
+                    return;
+                }
+                release(lane, 0, request);
+                request.future.complete(response);
+            }
+
+            @Override
+            public void onFailure(T ignored, IOException e) {
+                release(lane, 0, request);
+                request.future.completeExceptionally(e);
+            }
+        });
+    }
+
+    /**
+     * Marks the in-flight request of a lane as finished and schedules the next one.
+     *
+     * @param lane the lane
+     * @param pauseSeconds how long the lane and all other lanes should wait before sending again
+     * @param completed the request to remove from the lane, null to retry it
+     */
+    private void release(ChatLane lane, int pauseSeconds, PendingRequest<?, ?> completed) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            lane.inFlight = false;
+            if (completed != null) {
+                lane.queue.remove(completed);
+                pending.decrementAndGet();
+            }
+            if (pauseSeconds > 0) {
+                lane.blockedUntil = now + TimeUnit.SECONDS.toNanos(pauseSeconds);
+                if (lane.blockedUntil - globalBlockedUntil > 0)
+                    globalBlockedUntil = lane.blockedUntil;
+            }
+            if (running && !lane.queue.isEmpty() && !lane.scheduled)
+                schedule(lane, now);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Puts a lane into the ready or delayed queue depending on when it may send again.
+     *
+     * @param lane the lane with pending requests
+     * @param now the current time in nanoseconds
+     */
+    private void schedule(ChatLane lane, long now) {
+        long wait = Math.max(lane.blockedUntil - now, lane.bucket.nanosUntilAvailable(now));
+        lane.scheduled = true;
+        if (wait <= 0) {
+            ready.addLast(lane);
+        } else {
+            lane.eligibleAt = now + wait;
+            delayed.add(lane);
+        }
+    }
+
+    /**
+     * Forgets lanes without pending requests whose buckets are full again.
+     *
+     * @param now the current time in nanoseconds
+     */
+    private void sweep(long now) {
+        lastSweep = now;
+        Iterator<ChatLane> iterator = lanes.values().iterator();
+        while (iterator.hasNext()) {
+            ChatLane lane = iterator.next();
+            if (lane.queue.isEmpty() && !lane.inFlight && !lane.scheduled && lane.blockedUntil - now <= 0
+                    && lane.bucket.isFull(now))
+                iterator.remove();
+        }
+    }
+
+    /**
+     * Checks whether a chat id belongs to a group, supergroup or channel, which have lower limits.
+     *
+     * @param chatId the chat id (Long) or channel username (String)
+     * @return true if the chat is not a private chat
+     */
+    private static boolean isGroup(Object chatId) {
+        if (chatId instanceof Number)
+            return ((Number) chatId).longValue() < 0;
+        return true;
+    }
+
+    /**
+     * FIFO lane of a single chat.
+     */
+    private static final class ChatLane {
+        final ArrayDeque<PendingRequest<?, ?>> queue = new ArrayDeque<>();
+        final TokenBucket bucket;
+        boolean inFlight;
+        boolean scheduled;
+        long eligibleAt;
+        long blockedUntil;
+
+        ChatLane(TokenBucket bucket, long now) {
+            this.bucket = bucket;
+            this.blockedUntil = now;
+        }
+    }
+
+    /**
+     * A queued request and the future of its response.
+     */
+    private static final class PendingRequest<T extends BaseRequest<T, R>, R extends BaseResponse> {
+        final T request;
+        final CompletableFuture<R> future = new CompletableFuture<>();
+        int attempts;
+
+        PendingRequest(T request) {
+            this.request = request;
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.httydcraft.lamp.telegram.send;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token bucket refilled continuously at a fixed rate. Not thread-safe, callers synchronize externally.
+ *
+ * @see SendScheduler
+ */
+final class TokenBucket {
+    private static final double NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Tokens added per nanosecond
+     */
+    private final double ratePerNano;
+
+    /**
+     * Maximum amount of stored tokens
+     */
+    private final double capacity;
+
+    /**
+     * Currently stored tokens
+     */
+    private double tokens;
+
+    /**
+     * Time of the last refill, in {@link System#nanoTime()} units
+     */
+    private long refilledAt;
+
+    /**
+     * Creates a full token bucket.
+     *
+     * @param ratePerSecond tokens added per second
+     * @param capacity maximum amount of stored tokens, at least 1
+     * @param now the current time in nanoseconds
+     */
+    TokenBucket(double ratePerSecond, double capacity, long now) {
+        this.ratePerNano = ratePerSecond / NANOS_PER_SECOND;
+        this.capacity = Math.max(1, capacity);
+        this.tokens = this.capacity;
+        this.refilledAt = now;
+    }
+
+    /**
+     * Takes a token if one is available.
+     *
+     * @param now the current time in nanoseconds
+     * @return true if a token was taken
+     */
+    boolean tryAcquire(long now) {
+        refill(now);
+        if (tokens < 1)
+            return false;
+        tokens -= 1;
+        return true;
+    }
+
+    /**
+     * Computes how long it takes until a token is available.
+     *
+     * @param now the current time in nanoseconds
+     * @return the wait time in nanoseconds, 0 if a token is available right away
+     */
+    long nanosUntilAvailable(long now) {
+        refill(now);
+        if (tokens >= 1)
+            return 0;
+        return (long) Math.ceil((1 - tokens) / ratePerNano);
+    }
+
+    /**
+     * Checks whether the bucket is full, which means forgetting it loses no state.
+     *
+     * @param now the current time in nanoseconds
+     * @return true if the bucket holds its full capacity
+     */
+    boolean isFull(long now) {
+        refill(now);
+        return tokens >= capacity;
+    }
+
+    private void refill(long now) {
+        long elapsed = now - refilledAt;
+        if (elapsed <= 0)
+            return;
+        tokens = Math.min(capacity, tokens + elapsed * ratePerNano);
+        refilledAt = now;
+    }
+}
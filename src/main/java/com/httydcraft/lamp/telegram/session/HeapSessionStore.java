@@ -0,0 +1,166 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import com.httydcraft.lamp.telegram.execution.ChatKeys;
+
+/**
+ * Session store keeping values on the heap. Ids are held in primitive arrays without boxing
+ * or per-entry nodes, values are evicted in least recently used order once the store is full
+ * and expire after a period without access. Values are returned as stored, so mutable values
+ * are shared between concurrent commands of the same id.
+ *
+ * @param <V> the value type
+ * @see OffHeapSessionStore
+ */
+public class HeapSessionStore<V> implements SessionStore<V> {
+    /**
+     * Independently locked parts of the store
+     */
+    private final Segment<V>[] segments;
+
+    /**
+     * Creates a new store whose values do not expire.
+     *
+     * @param maxSize the maximum amount of values
+     */
+    public HeapSessionStore(int maxSize) {
+        this(maxSize, 0, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Creates a new store.
+     *
+     * @param maxSize the maximum amount of values
+     * @param ttl the time after the last access values expire after, 0 if they do not expire
+     * @param unit the unit of the ttl
+     * @throws IllegalArgumentException if maxSize is not positive or ttl is negative
+     */
+    @SuppressWarnings("unchecked")
+    public HeapSessionStore(int maxSize, long ttl, TimeUnit unit) {
+        if (maxSize <= 0)
+            throw new IllegalArgumentException("maxSize must be positive");
+        if (ttl < 0)
+            throw new IllegalArgumentException("ttl cannot be negative");
+        int count = segmentCount(maxSize);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            segments[i] = new Segment<>((maxSize + count - 1) / count, unit.toNanos(ttl));
+    }
+
+    /**
+     * Gets the value of an id and marks it as recently used.
+     *
+     * @param id the user or chat id
+     * @return the value, or null if absent, evicted or expired
+     */
+    @Override
+    public V get(long id) {
+        Segment<V> segment = segmentOf(id);
+        synchronized (segment) {
+            int entry = segment.find(id, System.nanoTime());
+            return entry < 0 ? null : segment.values[entry];
+        }
+    }
+
+    /**
+     * Stores the value of an id, evicting the least recently used value of its segment if the segment is full.
+     *
+     * @param id the user or chat id
+     * @param value the value
+     */
+    @Override
+    public void put(long id, V value) {
+        Segment<V> segment = segmentOf(id);
+        synchronized (segment) {
+            segment.values[segment.insert(id, System.nanoTime())] = value;
+        }
+    }
+
+    /**
+     * Removes the value of an id.
+     *
+     * @param id the user or chat id
+     * @return the removed value, or null if absent
+     */
+    @Override
+    public V remove(long id) {
+        Segment<V> segment = segmentOf(id);
+        synchronized (segment) {
+            int entry = segment.remove(id);
+            if (entry < 0)
+                return null;
+            V value = segment.values[entry];
+            segment.release(entry);
+            return value;
+        }
+    }
+
+    /**
+     * Gets the amount of stored values, including expired values not evicted yet.
+     *
+     * @return the amount of values
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all values.
+     */
+    @Override
+    public void clear() {
+        for (Segment<V> segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+                Arrays.fill(segment.values, null);
+            }
+        }
+    }
+
+    /**
+     * Gets the segment of an id.
+     *
+     * @param id the id
+     * @return the segment
+     */
+    private Segment<V> segmentOf(long id) {
+        return segments[(int) (ChatKeys.mix(id) >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * Chooses the amount of segments, small stores use a single segment to keep the eviction order exact.
+     *
+     * @param maxSize the maximum amount of values
+     * @return a power of two
+     */
+    static int segmentCount(int maxSize) {
+        return maxSize < 1024 ? 1 : 16;
+    }
+
+    /**
+     * An index together with the values of its entries.
+     */
+    private static final class Segment<V> extends LongIndex {
+        private final V[] values;
+
+        @SuppressWarnings("unchecked")
+        Segment(int capacity, long ttlNanos) {
+            super(capacity, ttlNanos);
+            this.values = (V[]) new Object[capacity];
+        }
+
+        @Override
+        void release(int entry) {
+            values[entry] = null;
+        }
+    }
+}
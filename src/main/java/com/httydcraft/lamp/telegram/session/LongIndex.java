@@ -0,0 +1,255 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.util.Arrays;
+
+import com.httydcraft.lamp.telegram.execution.ChatKeys;
+
+/**
+ * Bounded open addressing index of primitive long keys, assigning every key an entry slot
+ * the session stores keep the value in. Entries are kept in least recently used order and
+ * expire after a period without access. Lookups do not allocate; not thread-safe.
+ */
+abstract class LongIndex {
+    private static final int NIL = -1;
+
+    /**
+     * Maximum amount of entries
+     */
+    private final int capacity;
+
+    /**
+     * Time after the last access an entry expires after in nanoseconds, 0 if entries do not expire
+     */
+    private final long ttlNanos;
+
+    /**
+     * Linear probing table of entry slots plus one, 0 marks an empty bucket
+     */
+    private final int[] table;
+
+    private final int mask;
+    private final long[] keys;
+    private final long[] accessedAt;
+
+    /**
+     * Links of the recency list, from the least recently used entry at {@link #head} to the most recently
+     * used one at {@link #tail}. Free slots are chained through {@link #next}.
+     */
+    private final int[] prev;
+    private final int[] next;
+
+    private int head = NIL;
+    private int tail = NIL;
+    private int free;
+    private int size;
+
+    /**
+     * Creates a new index.
+     *
+     * @param capacity the maximum amount of entries
+     * @param ttlNanos the time after the last access entries expire after in nanoseconds, 0 if they do not expire
+     */
+    LongIndex(int capacity, long ttlNanos) {
+        this.capacity = capacity;
+        this.ttlNanos = ttlNanos;
+        int buckets = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) << 1;
+        this.table = new int[buckets];
+        this.mask = buckets - 1;
+        this.keys = new long[capacity];
+        this.accessedAt = new long[capacity];
+        this.prev = new int[capacity];
+        this.next = new int[capacity];
+        clear();
+    }
+
+    /**
+     * Releases the value of an entry that was evicted or expired.
+     *
+     * @param entry the entry slot
+     */
+    abstract void release(int entry);
+
+    /**
+     * Looks up the entry of a key and marks it as most recently used.
+     *
+     * @param key the key
+     * @param now the current {@link System#nanoTime()}
+     * @return the entry slot, or -1 if the key is absent or expired
+     */
+    int find(long key, long now) {
+        int bucket = bucketOf(key);
+        if (bucket == NIL)
+            return NIL;
+        int entry = table[bucket] - 1;
+        if (isExpired(entry, now)) {
+            unlink(entry);
+            removeBucket(bucket);
+            release(entry);
+            return NIL;
+        }
+        touch(entry, now);
+        return entry;
+    }
+
+    /**
+     * Looks up the entry of a key, adding it if absent. Expired entries are removed and the least
+     * recently used entry is evicted if the index is full.
+     *
+     * @param key the key
+     * @param now the current {@link System#nanoTime()}
+     * @return the entry slot
+     */
+    int insert(long key, long now) {
+        int bucket = bucketOf(key);
+        if (bucket != NIL) {
+            int entry = table[bucket] - 1;
+            touch(entry, now);
+            return entry;
+        }
+        expire(now);
+        if (size == capacity) {
+            int eldest = head;
+            remove(keys[eldest]);
+            release(eldest);
+        }
+        int entry = free;
+        free = next[entry];
+        keys[entry] = key;
+        accessedAt[entry] = now;
+        linkLast(entry);
+        int index = (int) ChatKeys.mix(key) & mask;
+        while (table[index] != 0)
+            index = (index + 1) & mask;
+        table[index] = entry + 1;
+        size++;
+        return entry;
+    }
+
+    /**
+     * Removes the entry of a key without releasing it.
+     *
+     * @param key the key
+     * @return the removed entry slot, or -1 if the key is absent
+     */
+    int remove(long key) {
+        int bucket = bucketOf(key);
+        if (bucket == NIL)
+            return NIL;
+        int entry = table[bucket] - 1;
+        unlink(entry);
+        removeBucket(bucket);
+        return entry;
+    }
+
+    /**
+     * Removes and releases the expired entries.
+     *
+     * @param now the current {@link System#nanoTime()}
+     */
+    void expire(long now) {
+        while (head != NIL && isExpired(head, now)) {
+            int eldest = head;
+            remove(keys[eldest]);
+            release(eldest);
+        }
+    }
+
+    /**
+     * Removes all entries without releasing them.
+     */
+    void clear() {
+        Arrays.fill(table, 0);
+        for (int i = 0; i < capacity; i++)
+            next[i] = i + 1 < capacity ? i + 1 : NIL;
+        free = 0;
+        head = tail = NIL;
+        size = 0;
+    }
+
+    /**
+     * Gets the amount of entries, including expired entries not removed yet.
+     *
+     * @return the amount of entries
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Finds the bucket holding a key.
+     *
+     * @param key the key
+     * @return the bucket, or -1 if the key is absent
+     */
+    private int bucketOf(long key) {
+        int index = (int) ChatKeys.mix(key) & mask;
+        int slot;
+        while ((slot = table[index]) != 0) {
+            if (keys[slot - 1] == key)
+                return index;
+            index = (index + 1) & mask;
+        }
+        return NIL;
+    }
+
+    /**
+     * Empties a bucket, shifting the following buckets of the probe sequence back so lookups
+     * need no tombstones, and returns the slot of its entry to the free list.
+     *
+     * @param bucket the bucket
+     */
+    private void removeBucket(int bucket) {
+        int entry = table[bucket] - 1;
+        int gap = bucket;
+        int index = (gap + 1) & mask;
+        int slot;
+        while ((slot = table[index]) != 0) {
+            int home = (int) ChatKeys.mix(keys[slot - 1]) & mask;
+            // move the entry into the gap unless its home bucket lies cyclically in (gap, index]
+            if (((index - home) & mask) >= ((index - gap) & mask)) {
+                table[gap] = slot;
+                gap = index;
+            }
+            index = (index + 1) & mask;
+        }
+        table[gap] = 0;
+        next[entry] = free;
+        free = entry;
+        size--;
+    }
+
+    private boolean isExpired(int entry, long now) {
+        return ttlNanos > 0 && now - accessedAt[entry] >= ttlNanos;
+    }
+
+    private void touch(int entry, long now) {
+        accessedAt[entry] = now;
+        if (entry != tail) {
+            unlink(entry);
+            linkLast(entry);
+        }
+    }
+
+    private void linkLast(int entry) {
+        prev[entry] = tail;
+        next[entry] = NIL;
+        if (tail == NIL)
+            head = entry;
+        else
+            next[tail] = entry;
+        tail = entry;
+    }
+
+    private void unlink(int entry) {
+        int before = prev[entry];
+        int after = next[entry];
+        if (before == NIL)
+            head = after;
+        else
+            next[before] = after;
+        if (after == NIL)
+            tail = before;
+        else
+            prev[after] = before;
+    }
+}
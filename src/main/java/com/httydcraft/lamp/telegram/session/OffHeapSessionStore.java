@@ -0,0 +1,211 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import com.httydcraft.lamp.telegram.execution.ChatKeys;
+
+/**
+ * Session store keeping serialized values in direct memory outside of the heap, so millions of
+ * sessions neither grow the heap nor slow down garbage collection. Every entry reserves a slot
+ * of the maximum value size, ids and recency links are held in primitive arrays.
+ * <p>
+ * Values are decoded into new instances on every {@link #get(long)}, changes must be written back
+ * with {@link #put(long, Object)}. Concurrent commands of the same id overwrite each other's changes.
+ *
+ * @param <V> the value type
+ * @see HeapSessionStore
+ */
+public class OffHeapSessionStore<V> implements SessionStore<V> {
+    /**
+     * Serializes the values
+     */
+    private final SessionCodec<V> codec;
+
+    /**
+     * Maximum size of a serialized value in bytes
+     */
+    private final int maxValueSize;
+
+    /**
+     * Independently locked parts of the store
+     */
+    private final Segment[] segments;
+
+    /**
+     * Creates a new store.
+     *
+     * @param maxSize the maximum amount of values
+     * @param ttl the time after the last access values expire after, 0 if they do not expire
+     * @param unit the unit of the ttl
+     * @param maxValueSize the maximum size of a serialized value in bytes, reserved for every entry
+     * @param codec the codec serializing the values
+     * @throws IllegalArgumentException if a size is not positive, ttl is negative or a segment would exceed 2 GiB
+     */
+    public OffHeapSessionStore(int maxSize, long ttl, TimeUnit unit, int maxValueSize, SessionCodec<V> codec) {
+        if (maxSize <= 0 || maxValueSize <= 0)
+            throw new IllegalArgumentException("maxSize and maxValueSize must be positive");
+        if (ttl < 0)
+            throw new IllegalArgumentException("ttl cannot be negative");
+        int count = HeapSessionStore.segmentCount(maxSize);
+        int capacity = (maxSize + count - 1) / count;
+        long segmentBytes = (long) capacity * (Integer.BYTES + maxValueSize);
+        if (segmentBytes > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("maxSize * maxValueSize is too large, " + segmentBytes
+                    + " bytes exceed the 2 GiB limit of a segment");
+        this.codec = codec;
+        this.maxValueSize = maxValueSize;
+        this.segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            segments[i] = new Segment(capacity, unit.toNanos(ttl), (int) segmentBytes);
+    }
+
+    /**
+     * Decodes the value of an id and marks it as recently used.
+     *
+     * @param id the user or chat id
+     * @return a new instance of the value, or null if absent, evicted or expired
+     */
+    @Override
+    public V get(long id) {
+        Segment segment = segmentOf(id);
+        ByteBuffer value;
+        synchronized (segment) {
+            int entry = segment.find(id, System.nanoTime());
+            if (entry < 0)
+                return null;
+            value = copy(segment, entry);
+        }
+        return codec.decode(value);
+    }
+
+    /**
+     * Encodes and stores the value of an id, evicting the least recently used value of its
+     * segment if the segment is full.
+     *
+     * @param id the user or chat id
+     * @param value the value
+     * @throws IllegalArgumentException if the encoded value exceeds the maximum value size or the codec
+     *         cannot encode it, the previous value of the id is removed if encoding fails
+     */
+    @Override
+    public void put(long id, V value) {
+        Segment segment = segmentOf(id);
+        synchronized (segment) {
+            int entry = segment.insert(id, System.nanoTime());
+            ByteBuffer slot = segment.memory.duplicate();
+            slot.position(offsetOf(entry) + Integer.BYTES).limit(offsetOf(entry) + Integer.BYTES + maxValueSize);
+            try {
+                codec.encode(value, slot);
+            } catch (RuntimeException e) {
+                // the slot holds a partial encoding behind a stale length, it must not be read
+                segment.remove(id);
+                if (e instanceof BufferOverflowException)
+                    throw new IllegalArgumentException("The session of " + id + " exceeds " + maxValueSize + " bytes");
+                throw e;
+            }
+            segment.memory.putInt(offsetOf(entry), slot.position() - offsetOf(entry) - Integer.BYTES);
+        }
+    }
+
+    /**
+     * Removes the value of an id.
+     *
+     * @param id the user or chat id
+     * @return the removed value, or null if absent
+     */
+    @Override
+    public V remove(long id) {
+        Segment segment = segmentOf(id);
+        ByteBuffer value;
+        synchronized (segment) {
+            int entry = segment.remove(id);
+            if (entry < 0)
+                return null;
+            value = copy(segment, entry);
+        }
+        return codec.decode(value);
+    }
+
+    /**
+     * Gets the amount of stored values, including expired values not evicted yet.
+     *
+     * @return the amount of values
+     */
+    @Override
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Removes all values.
+     */
+    @Override
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.clear();
+            }
+        }
+    }
+
+    /**
+     * Copies the serialized value of an entry to the heap, so it can be decoded outside of the lock.
+     *
+     * @param segment the segment of the entry
+     * @param entry the entry slot
+     * @return a buffer holding the serialized value
+     */
+    private ByteBuffer copy(Segment segment, int entry) {
+        int offset = offsetOf(entry) + Integer.BYTES;
+        ByteBuffer value = ByteBuffer.allocate(segment.memory.getInt(offset - Integer.BYTES));
+        ByteBuffer slot = segment.memory.duplicate();
+        slot.position(offset).limit(offset + value.capacity());
+        value.put(slot).flip();
+        return value;
+    }
+
+    /**
+     * Gets the offset of the slot of an entry.
+     *
+     * @param entry the entry slot
+     * @return the offset in the memory of its segment
+     */
+    private int offsetOf(int entry) {
+        return entry * (Integer.BYTES + maxValueSize);
+    }
+
+    /**
+     * Gets the segment of an id.
+     *
+     * @param id the id
+     * @return the segment
+     */
+    private Segment segmentOf(long id) {
+        return segments[(int) (ChatKeys.mix(id) >>> 32) & (segments.length - 1)];
+    }
+
+    /**
+     * An index together with the direct memory holding the length prefixed values of its entries.
+     */
+    private static final class Segment extends LongIndex {
+        private final ByteBuffer memory;
+
+        Segment(int capacity, long ttlNanos, int bytes) {
+            super(capacity, ttlNanos);
+            this.memory = ByteBuffer.allocateDirect(bytes);
+        }
+
+        @Override
+        void release(int entry) {
+            // slots are overwritten when reused
+        }
+    }
+}
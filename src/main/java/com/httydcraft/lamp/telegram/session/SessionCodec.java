@@ -0,0 +1,28 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Serializes the values of an {@link OffHeapSessionStore}.
+ *
+ * @param <V> the value type
+ * @see TelegramSession#codec()
+ */
+public interface SessionCodec<V> {
+    /**
+     * Writes a value.
+     *
+     * @param value the value
+     * @param target the buffer to write to, limited to the maximum value size
+     * @throws java.nio.BufferOverflowException if the value exceeds the maximum value size
+     */
+    void encode(V value, ByteBuffer target);
+
+    /**
+     * Reads a value written by {@link #encode(Object, ByteBuffer)}.
+     *
+     * @param source the buffer holding exactly the written bytes
+     * @return the value
+     */
+    V decode(ByteBuffer source);
+}
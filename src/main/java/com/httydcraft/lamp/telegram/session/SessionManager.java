@@ -0,0 +1,126 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.util.concurrent.TimeUnit;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.execution.ChatKeys;
+
+/**
+ * Loads the {@link TelegramSession} of an actor from a {@link SessionStore} and saves it
+ * once the command finished. Sessions without attributes are not stored.
+ *
+ * @see com.httydcraft.lamp.telegram.core.TelegramHandler#getSessions()
+ */
+public class SessionManager {
+    /**
+     * Default maximum amount of stored sessions
+     */
+    public static final int DEFAULT_MAX_SESSIONS = 100_000;
+
+    /**
+     * Default time after the last access sessions expire after, in hours
+     */
+    public static final long DEFAULT_TTL_HOURS = 24;
+
+    /**
+     * The store holding the sessions
+     */
+    private volatile SessionStore<TelegramSession> store;
+
+    /**
+     * Whether sessions are kept per user or per chat
+     */
+    private volatile SessionScope scope = SessionScope.USER;
+
+    /**
+     * Creates a new manager keeping up to {@link #DEFAULT_MAX_SESSIONS} sessions on the heap,
+     * expiring {@link #DEFAULT_TTL_HOURS} hours after their last access.
+     */
+    public SessionManager() {
+        this(new HeapSessionStore<>(DEFAULT_MAX_SESSIONS, DEFAULT_TTL_HOURS, TimeUnit.HOURS));
+    }
+
+    /**
+     * Creates a new manager.
+     *
+     * @param store the store holding the sessions
+     */
+    public SessionManager(SessionStore<TelegramSession> store) {
+        this.store = store;
+    }
+
+    /**
+     * Loads the session of an actor, creating an empty session if none is stored.
+     *
+     * @param actor the actor
+     * @return the session
+     */
+    public TelegramSession load(TelegramActor actor) {
+        TelegramSession session = store.get(keyOf(actor));
+        return session != null ? session : new TelegramSession();
+    }
+
+    /**
+     * Saves the session of an actor if it changed, removing it from the store if it is empty.
+     * The session stays modified if the store fails.
+     *
+     * @param actor the actor
+     * @param session the session loaded for the actor
+     */
+    public void save(TelegramActor actor, TelegramSession session) {
+        if (!session.isModified())
+            return;
+        if (session.isEmpty())
+            store.remove(keyOf(actor));
+        else
+            store.put(keyOf(actor), session);
+        session.markSaved();
+    }
+
+    /**
+     * Gets the key the session of an actor is stored under.
+     *
+     * @param actor the actor
+     * @return the user id or the chat key, depending on the scope
+     */
+    private long keyOf(TelegramActor actor) {
+        return scope == SessionScope.CHAT ? ChatKeys.of(actor.getDispatchSource()) : actor.getId();
+    }
+
+    /**
+     * Gets the store holding the sessions.
+     *
+     * @return the session store
+     */
+    public SessionStore<TelegramSession> getStore() {
+        return store;
+    }
+
+    /**
+     * Replaces the store holding the sessions, e.g. with an {@link OffHeapSessionStore} using
+     * {@link TelegramSession#codec()}. Sessions of the previous store are not migrated.
+     *
+     * @param store the session store
+     */
+    public void setStore(SessionStore<TelegramSession> store) {
+        this.store = store;
+    }
+
+    /**
+     * Gets whether sessions are kept per user or per chat.
+     *
+     * @return the session scope
+     */
+    public SessionScope getScope() {
+        return scope;
+    }
+
+    /**
+     * Sets whether sessions are kept per user or per chat. Defaults to {@link SessionScope#USER}.
+     *
+     * @param scope the session scope
+     */
+    public void setScope(SessionScope scope) {
+        this.scope = scope;
+    }
+}
@@ -0,0 +1,18 @@
+package com.httydcraft.lamp.telegram.session;
+
+/**
+ * Determines whose state a {@link TelegramSession} holds.
+ *
+ * @see SessionManager#setScope(SessionScope)
+ */
+public enum SessionScope {
+    /**
+     * One session per user, shared across all chats of the user
+     */
+    USER,
+
+    /**
+     * One session per chat, shared by all of its members
+     */
+    CHAT
+}
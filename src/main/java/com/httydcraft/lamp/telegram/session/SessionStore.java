@@ -0,0 +1,46 @@
+package com.httydcraft.lamp.telegram.session;
+
+/**
+ * Bounded store of per-user or per-chat state keyed by primitive long ids.
+ *
+ * @param <V> the value type
+ * @see HeapSessionStore
+ * @see OffHeapSessionStore
+ */
+public interface SessionStore<V> {
+    /**
+     * Gets the value of an id and marks it as recently used.
+     *
+     * @param id the user or chat id
+     * @return the value, or null if absent, evicted or expired
+     */
+    V get(long id);
+
+    /**
+     * Stores the value of an id, evicting the least recently used value if the store is full.
+     *
+     * @param id the user or chat id
+     * @param value the value
+     */
+    void put(long id, V value);
+
+    /**
+     * Removes the value of an id.
+     *
+     * @param id the user or chat id
+     * @return the removed value, or null if absent
+     */
+    V remove(long id);
+
+    /**
+     * Gets the amount of stored values, including expired values not evicted yet.
+     *
+     * @return the amount of values
+     */
+    int size();
+
+    /**
+     * Removes all values.
+     */
+    void clear();
+}
@@ -0,0 +1,167 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * State of a user or chat kept across commands, e.g. the progress of a multi-step command.
+ * Declare a parameter of this type in a command to receive the session of the invoking actor,
+ * changes are saved to the {@link SessionStore} once the command finished.
+ * <p>
+ * Sessions kept off-heap only support strings, numbers and booleans as attribute values.
+ *
+ * @see SessionManager
+ * @see com.httydcraft.lamp.telegram.TelegramActor#getSession()
+ */
+public class TelegramSession {
+    /**
+     * The attributes of the session
+     */
+    private final Map<String, Object> attributes;
+
+    /**
+     * Whether the attributes changed since the session was loaded
+     */
+    private volatile boolean modified;
+
+    /**
+     * Creates a new empty session.
+     */
+    public TelegramSession() {
+        this(new ConcurrentHashMap<>());
+    }
+
+    /**
+     * Creates a session holding the given attributes.
+     *
+     * @param attributes the attributes, owned by the session from now on
+     */
+    TelegramSession(Map<String, Object> attributes) {
+        this.attributes = attributes;
+    }
+
+    /**
+     * Gets an attribute.
+     *
+     * @param <T> the attribute type
+     * @param key the attribute key
+     * @return the value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key) {
+        return (T) attributes.get(key);
+    }
+
+    /**
+     * Gets an attribute, falling back to a default value.
+     *
+     * @param <T> the attribute type
+     * @param key the attribute key
+     * @param defaultValue the value returned if the attribute is absent
+     * @return the value, or the default value if absent
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T get(String key, T defaultValue) {
+        Object value = attributes.get(key);
+        return value == null ? defaultValue : (T) value;
+    }
+
+    /**
+     * Sets an attribute.
+     *
+     * @param key the attribute key
+     * @param value the value, or null to remove the attribute
+     */
+    public void set(String key, Object value) {
+        if (value == null)
+            attributes.remove(key);
+        else
+            attributes.put(key, value);
+        modified = true;
+    }
+
+    /**
+     * Removes an attribute.
+     *
+     * @param <T> the attribute type
+     * @param key the attribute key
+     * @return the removed value, or null if absent
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T remove(String key) {
+        modified = true;
+        return (T) attributes.remove(key);
+    }
+
+    /**
+     * Checks whether an attribute is set.
+     *
+     * @param key the attribute key
+     * @return true if the attribute is set
+     */
+    public boolean has(String key) {
+        return attributes.containsKey(key);
+    }
+
+    /**
+     * Gets the keys of all attributes.
+     *
+     * @return an unmodifiable view of the attribute keys
+     */
+    public Set<String> keys() {
+        return Collections.unmodifiableSet(attributes.keySet());
+    }
+
+    /**
+     * Removes all attributes, the session is deleted from the store once the command finished.
+     */
+    public void clear() {
+        attributes.clear();
+        modified = true;
+    }
+
+    /**
+     * Checks whether the session has no attributes.
+     *
+     * @return true if the session is empty
+     */
+    public boolean isEmpty() {
+        return attributes.isEmpty();
+    }
+
+    /**
+     * Checks whether the attributes changed since the session was loaded or saved.
+     *
+     * @return true if the session has unsaved changes
+     */
+    public boolean isModified() {
+        return modified;
+    }
+
+    /**
+     * Marks the session as saved.
+     */
+    void markSaved() {
+        modified = false;
+    }
+
+    /**
+     * Gets the attributes of the session.
+     *
+     * @return the live attribute map
+     */
+    Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Gets the codec storing sessions in an {@link OffHeapSessionStore}.
+     *
+     * @return the session codec
+     */
+    public static SessionCodec<TelegramSession> codec() {
+        return TelegramSessionCodec.INSTANCE;
+    }
+}
@@ -0,0 +1,99 @@
+package com.httydcraft.lamp.telegram.session;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Serializes the attributes of a {@link TelegramSession} as a count followed by key, type tag
+ * and value of every attribute.
+ */
+enum TelegramSessionCodec implements SessionCodec<TelegramSession> {
+    INSTANCE;
+
+    private static final byte STRING = 0;
+    private static final byte LONG = 1;
+    private static final byte INTEGER = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte BOOLEAN = 4;
+
+    /**
+     * Writes the attributes of a session.
+     *
+     * @param session the session
+     * @param target the buffer to write to
+     * @throws IllegalArgumentException if an attribute is not a string, number or boolean
+     */
+    @Override
+    public void encode(TelegramSession session, ByteBuffer target) {
+        Map<String, Object> attributes = session.getAttributes();
+        target.putInt(attributes.size());
+        for (Map.Entry<String, Object> attribute : attributes.entrySet()) {
+            putString(target, attribute.getKey());
+            Object value = attribute.getValue();
+            if (value instanceof String) {
+                target.put(STRING);
+                putString(target, (String) value);
+            } else if (value instanceof Long) {
+                target.put(LONG).putLong((Long) value);
+            } else if (value instanceof Integer) {
+                target.put(INTEGER).putInt((Integer) value);
+            } else if (value instanceof Double) {
+                target.put(DOUBLE).putDouble((Double) value);
+            } else if (value instanceof Boolean) {
+                target.put(BOOLEAN).put((byte) ((Boolean) value ? 1 : 0));
+            } else {
+                throw new IllegalArgumentException("Session attribute " + attribute.getKey() + " of type "
+                        + value.getClass().getName() + " cannot be stored off-heap");
+            }
+        }
+    }
+
+    /**
+     * Reads the attributes of a session.
+     *
+     * @param source the buffer to read from
+     * @return a new session
+     */
+    @Override
+    public TelegramSession decode(ByteBuffer source) {
+        int count = source.getInt();
+        Map<String, Object> attributes = new ConcurrentHashMap<>(Math.max(16, count * 2));
+        for (int i = 0; i < count; i++) {
+            String key = getString(source);
+            byte type = source.get();
+            switch (type) {
+                case STRING:
+                    attributes.put(key, getString(source));
+                    break;
+                case LONG:
+                    attributes.put(key, source.getLong());
+                    break;
+                case INTEGER:
+                    attributes.put(key, source.getInt());
+                    break;
+                case DOUBLE:
+                    attributes.put(key, source.getDouble());
+                    break;
+                case BOOLEAN:
+                    attributes.put(key, source.get() != 0);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown session attribute type " + type);
+            }
+        }
+        return new TelegramSession(attributes);
+    }
+
+    private static void putString(ByteBuffer target, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        target.putInt(bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer source) {
+        byte[] bytes = new byte[source.getInt()];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,139 @@
+package com.httydcraft.lamp.telegram.throttle;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free sliding window rate limiter with a counter per key.
+ * Each key keeps the counts of the current and the previous fixed window packed into a single
+ * atomic long, and estimates the sliding count by weighting the previous window with the part
+ * of it still covered by the sliding window. Keys without invocations in the last two windows
+ * are evicted periodically.
+ *
+ * @see Throttle
+ */
+public class SlidingWindowLimiter {
+    /**
+     * Highest supported limit, counts are packed into 16 bits
+     */
+    public static final int MAX_LIMIT = 0xFFFF;
+
+    /**
+     * Amount of acquisitions between sweeps of idle keys
+     */
+    private static final int SWEEP_INTERVAL = 1024;
+
+    /**
+     * Maximum invocations per window
+     */
+    private final int limit;
+
+    /**
+     * The window length in nanoseconds
+     */
+    private final long windowNanos;
+
+    /**
+     * The {@link System#nanoTime()} window indexes are counted from
+     */
+    private final long origin = System.nanoTime();
+
+    /**
+     * Packed window state per key: window index (32 bits), current count (16 bits), previous count (16 bits)
+     */
+    private final Map<Object, AtomicLong> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Acquisitions since the last sweep
+     */
+    private final AtomicInteger acquisitions = new AtomicInteger();
+
+    /**
+     * Creates a limiter.
+     *
+     * @param limit the maximum invocations per window
+     * @param window the window length
+     * @param unit the unit of the window
+     * @throws IllegalArgumentException if limit or window is out of range
+     */
+    public SlidingWindowLimiter(int limit, long window, TimeUnit unit) {
+        if (limit < 1 || limit > MAX_LIMIT)
+            throw new IllegalArgumentException("limit must be between 1 and " + MAX_LIMIT);
+        if (window <= 0)
+            throw new IllegalArgumentException("window must be positive");
+        this.limit = limit;
+        this.windowNanos = unit.toNanos(window);
+    }
+
+    /**
+     * Counts an invocation for a key if it stays within the limit.
+     *
+     * @param key the key, e.g. a user id
+     * @return true if the invocation is allowed, false if the key exceeded the limit
+     */
+    public boolean tryAcquire(Object key) {
+        long elapsed = System.nanoTime() - origin;
+        int index = (int) (elapsed / windowNanos);
+        double previousWeight = 1 - (double) (elapsed % windowNanos) / windowNanos;
+        if (acquisitions.incrementAndGet() % SWEEP_INTERVAL == 0)
+            sweep(index);
+
+        AtomicLong window = windows.get(key);
+        if (window == null)
+            window = windows.computeIfAbsent(key, k -> new AtomicLong(pack(index, 0, 0)));
+        while (true) {
+            long state = window.get();
+            int current = current(state);
+            int previous = previous(state);
+            int age = index - index(state);
+            if (age == 1) {
+                previous = current;
+                current = 0;
+            } else if (age != 0) {
+                previous = 0;
+                current = 0;
+            }
+            if (current + previous * previousWeight >= limit)
+                return false;
+            if (window.compareAndSet(state, pack(index, current + 1, previous)))
+                return true;
+        }
+    }
+
+    /**
+     * Gets the amount of keys currently tracked.
+     *
+     * @return the tracked key count
+     */
+    public int getTrackedCount() {
+        return windows.size();
+    }
+
+    /**
+     * Evicts keys without invocations in the current or the previous window.
+     *
+     * @param index the current window index
+     */
+    private void sweep(int index) {
+        windows.values().removeIf(window -> index - index(window.get()) > 1);
+    }
+
+    private static long pack(int index, int current, int previous) {
+        return (long) index << 32 | (long) current << 16 | previous;
+    }
+
+    private static int index(long state) {
+        return (int) (state >>> 32);
+    }
+
+    private static int current(long state) {
+        return (int) (state >>> 16) & 0xFFFF;
+    }
+
+    private static int previous(long state) {
+        return (int) state & 0xFFFF;
+    }
+}
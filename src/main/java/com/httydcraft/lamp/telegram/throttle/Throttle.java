@@ -0,0 +1,59 @@
+package com.httydcraft.lamp.telegram.throttle;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Limits how often a command can be executed within a sliding time window.
+ * Excess invocations are rejected before their arguments are resolved, replying with {@link #message()}
+ * at most once per window.
+ * <pre>
+ * &#64;Command("roll")
+ * &#64;Throttle(limit = 5, window = 10, scope = ThrottleScope.USER_IN_CHAT)
+ * public void roll(TelegramActor actor) { ... }
+ * </pre>
+ *
+ * @see ThrottleCondition
+ */
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface Throttle {
+    /**
+     * Gets the maximum amount of invocations within the window.
+     *
+     * @return the invocation limit, between 1 and {@link SlidingWindowLimiter#MAX_LIMIT}
+     */
+    int limit();
+
+    /**
+     * Gets the length of the window.
+     *
+     * @return the window length in {@link #unit()}
+     */
+    long window() default 1;
+
+    /**
+     * Gets the unit of the window.
+     *
+     * @return the window unit
+     */
+    TimeUnit unit() default TimeUnit.SECONDS;
+
+    /**
+     * Gets what the limit is counted per.
+     *
+     * @return the throttle scope
+     */
+    ThrottleScope scope() default ThrottleScope.USER;
+
+    /**
+     * Gets the error message replied to the first rejected invocation of a window, later
+     * rejections within the window are dropped silently.
+     *
+     * @return the rejection message, empty to drop all rejections silently
+     */
+    String message() default "You are using this command too often, please slow down.";
+}
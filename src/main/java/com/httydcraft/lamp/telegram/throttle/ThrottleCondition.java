@@ -0,0 +1,132 @@
+package com.httydcraft.lamp.telegram.throttle;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.jetbrains.annotations.NotNull;
+
+import com.httydcraft.lamp.telegram.TelegramActor;
+import com.httydcraft.lamp.telegram.dispatch.identificator.Identificator;
+import com.pengrad.telegrambot.TelegramBot;
+
+import revxrsal.commands.command.CommandActor;
+import revxrsal.commands.command.ExecutableCommand;
+import revxrsal.commands.process.CommandCondition;
+
+/**
+ * Enforces the {@link Throttle} limits of commands. Registered on every
+ * {@link com.httydcraft.lamp.telegram.core.TelegramHandler}, commands without the annotation are not limited.
+ * Every bot served by the handler counts invocations separately.
+ * <p>
+ * Rejections are replied at most once per window and key, further rejections within the same
+ * window are dropped silently.
+ *
+ * @see Throttle
+ * @see SlidingWindowLimiter
+ */
+public class ThrottleCondition implements CommandCondition {
+    /**
+     * Limiters of the throttled commands indexed by bot, created on their first invocation
+     */
+    private final Map<TelegramBot, Map<ExecutableCommand, Limiters>> limiters = new ConcurrentHashMap<>();
+
+    /**
+     * Rejects the invocation if the actor exceeded the limit of the command.
+     *
+     * @param actor the command actor
+     * @param command the resolved command
+     * @param arguments the unresolved arguments
+     * @throws ThrottledException if the limit was exceeded
+     */
+    @Override
+    public void test(@NotNull CommandActor actor, @NotNull ExecutableCommand command, @NotNull List<String> arguments) {
+        Throttle throttle = command.getAnnotation(Throttle.class);
+        if (throttle == null || !(actor instanceof TelegramActor))
+            return;
+        TelegramActor telegramActor = (TelegramActor) actor;
+        Limiters limiter = limiters.computeIfAbsent(telegramActor.getBot(), b -> new ConcurrentHashMap<>())
+                .computeIfAbsent(command, c -> new Limiters(throttle));
+        Object key = keyOf(throttle.scope(), telegramActor);
+        if (!limiter.invocations.tryAcquire(key)) {
+            boolean notify = !throttle.message().isEmpty() && limiter.notices.tryAcquire(key);
+            throw new ThrottledException(throttle.message(), notify);
+        }
+    }
+
+    /**
+     * Creates the key an invocation is counted under.
+     *
+     * @param scope the scope of the limit
+     * @param actor the invoking actor
+     * @return the limiter key
+     */
+    private static Object keyOf(ThrottleScope scope, TelegramActor actor) {
+        Long user = actor.getUser() != null ? actor.getId() : null;
+        switch (scope) {
+            case USER:
+                return user != null ? user : chatOf(actor);
+            case CHAT:
+                return chatOf(actor);
+            default:
+                return new UserInChat(chatOf(actor), user);
+        }
+    }
+
+    /**
+     * Gets the chat of an actor, falling back to the user for sources without chat (e.g. inline messages).
+     *
+     * @param actor the actor
+     * @return the chat identificator or user id
+     */
+    private static Object chatOf(TelegramActor actor) {
+        Identificator chat = actor.getDispatchSource().getChatIdentficator();
+        return chat != null ? chat : actor.getId();
+    }
+
+    /**
+     * Invocation and rejection notice limiters of a throttled command.
+     */
+    private static final class Limiters {
+        final SlidingWindowLimiter invocations;
+
+        /**
+         * Allows one rejection reply per key and window
+         */
+        final SlidingWindowLimiter notices;
+
+        Limiters(Throttle throttle) {
+            this.invocations = new SlidingWindowLimiter(throttle.limit(), throttle.window(), throttle.unit());
+            this.notices = new SlidingWindowLimiter(1, throttle.window(), throttle.unit());
+        }
+    }
+
+    /**
+     * Key of a user within a chat.
+     */
+    private static final class UserInChat {
+        private final Object chat;
+        private final Long user;
+
+        UserInChat(Object chat, Long user) {
+            this.chat = chat;
+            this.user = user;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof UserInChat))
+                return false;
+            UserInChat other = (UserInChat) o;
+            return chat.equals(other.chat) && Objects.equals(user, other.user);
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * chat.hashCode() + Objects.hashCode(user);
+        }
+    }
+}
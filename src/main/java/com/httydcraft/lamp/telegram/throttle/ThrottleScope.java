@@ -0,0 +1,23 @@
+package com.httydcraft.lamp.telegram.throttle;
+
+/**
+ * What a {@link Throttle} limit is counted per.
+ *
+ * @see Throttle#scope()
+ */
+public enum ThrottleScope {
+    /**
+     * Each user has their own limit, across all chats
+     */
+    USER,
+
+    /**
+     * Each chat has a limit shared by all of its members
+     */
+    CHAT,
+
+    /**
+     * Each user has their own limit in every chat
+     */
+    USER_IN_CHAT
+}
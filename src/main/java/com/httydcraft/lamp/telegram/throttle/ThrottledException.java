@@ -0,0 +1,53 @@
+package com.httydcraft.lamp.telegram.throttle;
+
+import org.jetbrains.annotations.NotNull;
+
+import revxrsal.commands.command.CommandActor;
+import revxrsal.commands.exception.SendableException;
+
+/**
+ * Thrown by the {@link ThrottleCondition} to reject an invocation exceeding its {@link Throttle} limit.
+ * Only the first rejection of a key within a window carries a message, later ones are dropped
+ * silently so that spamming a throttled command does not turn into a flood of replies.
+ *
+ * @see ThrottleCondition
+ */
+public class ThrottledException extends SendableException {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Whether the rejection is replied to the actor
+     */
+    private final boolean notify;
+
+    /**
+     * Creates a new throttled exception.
+     *
+     * @param message the rejection message
+     * @param notify whether the message is replied to the actor
+     */
+    public ThrottledException(String message, boolean notify) {
+        super(message);
+        this.notify = notify;
+    }
+
+    /**
+     * Checks whether the rejection is replied to the actor.
+     *
+     * @return false if the rejection is dropped silently
+     */
+    public boolean isNotify() {
+        return notify;
+    }
+
+    /**
+     * Replies the rejection message to the actor, unless the rejection is silent.
+     *
+     * @param actor the rejected actor
+     */
+    @Override
+    public void sendTo(@NotNull CommandActor actor) {
+        if (notify)
+            actor.error(getMessage());
+    }
+}
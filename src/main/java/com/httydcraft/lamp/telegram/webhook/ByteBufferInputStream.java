@@ -0,0 +1,44 @@
+package com.httydcraft.lamp.telegram.webhook;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Input stream reading straight from a byte buffer, without copying its contents.
+ */
+final class ByteBufferInputStream extends InputStream {
+    /**
+     * The buffer being read, its position advances while reading
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Creates a stream over the remaining bytes of a buffer.
+     *
+     * @param buffer the buffer to read, its position and limit are modified
+     */
+    ByteBufferInputStream(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    @Override
+    public int read() {
+        return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+    }
+
+    @Override
+    public int read(byte[] bytes, int offset, int length) {
+        if (length == 0)
+            return 0;
+        if (!buffer.hasRemaining())
+            return -1;
+        int count = Math.min(length, buffer.remaining());
+        buffer.get(bytes, offset, count);
+        return count;
+    }
+
+    @Override
+    public int available() {
+        return buffer.remaining();
+    }
+}
@@ -0,0 +1,75 @@
+package com.httydcraft.lamp.telegram.webhook;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+
+/**
+ * State of a single HTTP connection of the webhook server.
+ */
+final class WebhookConnection {
+    /**
+     * Initial capacity of the request buffer, enough for most updates
+     */
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    /**
+     * The client channel
+     */
+    final SocketChannel channel;
+
+    /**
+     * Bytes received and not processed yet, in write mode
+     */
+    ByteBuffer in = ByteBuffer.allocate(INITIAL_CAPACITY);
+
+    /**
+     * Response bytes not written yet, null if nothing is pending
+     */
+    ByteBuffer out;
+
+    /**
+     * Whether the connection is closed once the pending response was written
+     */
+    boolean closeAfterWrite;
+
+    /**
+     * Time in nanoseconds after which the connection is closed unless a request completes first
+     */
+    long deadline;
+
+    WebhookConnection(SocketChannel channel, long deadline) {
+        this.channel = channel;
+        this.deadline = deadline;
+    }
+
+    /**
+     * Makes sure the request buffer can hold at least the given amount of bytes.
+     *
+     * @param capacity the required capacity
+     */
+    void ensureCapacity(int capacity) {
+        if (in.capacity() >= capacity)
+            return;
+        ByteBuffer grown = ByteBuffer.allocate(Math.max(capacity, in.capacity() * 2));
+        in.flip();
+        grown.put(in);
+        in = grown;
+    }
+
+    /**
+     * Queues a response for writing.
+     *
+     * @param response the response bytes
+     * @param close whether to close the connection after the response
+     */
+    void respond(byte[] response, boolean close) {
+        if (out == null || !out.hasRemaining()) {
+            out = ByteBuffer.wrap(response);
+        } else {
+            ByteBuffer joined = ByteBuffer.allocate(out.remaining() + response.length);
+            joined.put(out).put(response).flip();
+            out = joined;
+        }
+        closeAfterWrite |= close;
+    }
+}
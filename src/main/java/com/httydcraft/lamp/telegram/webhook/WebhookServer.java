@@ -0,0 +1,728 @@
+package com.httydcraft.lamp.telegram.webhook;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.httydcraft.lamp.telegram.core.TelegramHandler;
+import com.pengrad.telegrambot.BotUtils;
+import com.pengrad.telegrambot.TelegramBot;
+import com.pengrad.telegrambot.model.Update;
+
+import revxrsal.commands.util.Preconditions;
+
+/**
+ * Embedded HTTP server receiving updates pushed by Telegram through a webhook.
+ * Runs a single non-blocking selector thread, parses every update straight from the
+ * connection buffer and hands it to the dispatch executor of the handler, answering
+ * {@code 200 OK} once the update was queued. If the dispatch executor is saturated, the update
+ * is answered with {@code 503 Service Unavailable} and Telegram delivers it again later.
+ * <p>
+ * Requests must be {@code POST}s to the configured path with a {@code Content-Length} body.
+ * If a secret token is configured, requests without a matching
+ * {@code X-Telegram-Bot-Api-Secret-Token} header are rejected as soon as their headers arrive.
+ * Connections beyond {@link #setMaxConnections(int)} are refused, and connections that do not
+ * complete a request within {@link #setIdleTimeout(long, TimeUnit)} are closed.
+ * <p>
+ * The server speaks plain HTTP, so put it behind a TLS-terminating reverse proxy, as Telegram
+ * only delivers to HTTPS URLs.
+ *
+ * @see TelegramHandler#startWebhook(InetSocketAddress, String, String)
+ * @see com.pengrad.telegrambot.request.SetWebhook
+ */
+public class WebhookServer implements AutoCloseable {
+    /**
+     * Default maximum size of a request body in bytes
+     */
+    public static final int DEFAULT_MAX_BODY_SIZE = 1024 * 1024;
+
+    /**
+     * Default maximum amount of open connections, Telegram opens at most 100 per webhook
+     */
+    public static final int DEFAULT_MAX_CONNECTIONS = 100;
+
+    /**
+     * Default time a connection may take to complete a request, in milliseconds
+     */
+    public static final long DEFAULT_IDLE_TIMEOUT = TimeUnit.SECONDS.toMillis(30);
+
+    /**
+     * Maximum size of the request line and headers in bytes
+     */
+    private static final int MAX_HEADER_SIZE = 8 * 1024;
+
+    private static final Logger LOGGER = Logger.getLogger(WebhookServer.class.getName());
+
+    private static final byte[] OK = response("200 OK", false);
+    private static final byte[] BAD_REQUEST = response("400 Bad Request", true);
+    private static final byte[] FORBIDDEN = response("403 Forbidden", true);
+    private static final byte[] NOT_FOUND = response("404 Not Found", true);
+    private static final byte[] METHOD_NOT_ALLOWED = response("405 Method Not Allowed", true);
+    private static final byte[] LENGTH_REQUIRED = response("411 Length Required", true);
+    private static final byte[] PAYLOAD_TOO_LARGE = response("413 Payload Too Large", true);
+    private static final byte[] HEADERS_TOO_LARGE = response("431 Request Header Fields Too Large", true);
+    private static final byte[] SERVICE_UNAVAILABLE = response("503 Service Unavailable", false);
+    private static final byte[] TOO_MANY_CONNECTIONS = response("503 Service Unavailable", true);
+
+    private static final byte[] POST = "POST".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CONNECTION = "connection".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] CLOSE = "close".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] SECRET_TOKEN = "x-telegram-bot-api-secret-token".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * The handler updates are dispatched to
+     */
+    private final TelegramHandler handler;
+
+    /**
+     * The bot the webhook is registered for
+     */
+    private final TelegramBot bot;
+
+    /**
+     * The address the server listens on
+     */
+    private final InetSocketAddress address;
+
+    /**
+     * The request path updates are posted to
+     */
+    private final byte[] path;
+
+    /**
+     * The expected secret token header value, null if requests are not authenticated
+     */
+    private final byte[] secretToken;
+
+    /**
+     * Maximum size of a request body in bytes
+     */
+    private final int maxBodySize;
+
+    /**
+     * Maximum amount of open connections
+     */
+    private int maxConnections = DEFAULT_MAX_CONNECTIONS;
+
+    /**
+     * Time a connection may take to complete a request, in nanoseconds
+     */
+    private long idleTimeout = TimeUnit.MILLISECONDS.toNanos(DEFAULT_IDLE_TIMEOUT);
+
+    /**
+     * Amount of open connections, only accessed by the selector thread
+     */
+    private int connections;
+
+    /**
+     * The selector of the server, null if the server is not running
+     */
+    private Selector selector;
+
+    /**
+     * The listening channel, null if the server is not running
+     */
+    private ServerSocketChannel serverChannel;
+
+    /**
+     * The thread running the selector loop, null if the server is not running
+     */
+    private Thread selectorThread;
+
+    /**
+     * Whether the selector loop should keep running
+     */
+    private volatile boolean running;
+
+    /**
+     * Creates a new webhook server accepting bodies up to {@link #DEFAULT_MAX_BODY_SIZE} bytes.
+     *
+     * @param handler the handler to dispatch updates to
+     * @param address the address to listen on, port 0 picks a free port
+     * @param path the request path updates are posted to, e.g. {@code "/telegram"}
+     * @param secretToken the secret token configured with setWebhook, or null to accept any request
+     */
+    public WebhookServer(TelegramHandler handler, InetSocketAddress address, String path, String secretToken) {
+        this(handler, address, path, secretToken, DEFAULT_MAX_BODY_SIZE);
+    }
+
+    /**
+     * Creates a new webhook server.
+     *
+     * @param handler the handler to dispatch updates to
+     * @param address the address to listen on, port 0 picks a free port
+     * @param path the request path updates are posted to, e.g. {@code "/telegram"}
+     * @param secretToken the secret token configured with setWebhook, or null to accept any request
+     * @param maxBodySize the maximum size of a request body in bytes
+     * @throws IllegalArgumentException if path does not start with '/' or maxBodySize is not positive
+     */
+    public WebhookServer(TelegramHandler handler, InetSocketAddress address, String path, String secretToken,
+            int maxBodySize) {
+        this(handler, handler.getBot(), address, path, secretToken, maxBodySize);
+    }
+
+    /**
+     * Creates a new webhook server receiving the updates of a bot attached to the handler.
+     *
+     * @param handler the handler to dispatch updates to
+     * @param bot the bot the webhook is registered for, attached to the handler
+     * @param address the address to listen on, port 0 picks a free port
+     * @param path the request path updates are posted to, e.g. {@code "/telegram"}
+     * @param secretToken the secret token configured with setWebhook, or null to accept any request
+     * @param maxBodySize the maximum size of a request body in bytes
+     * @throws IllegalArgumentException if path does not start with '/' or maxBodySize is not positive
+     * @see TelegramHandler#attachBot(TelegramBot)
+     */
+    public WebhookServer(TelegramHandler handler, TelegramBot bot, InetSocketAddress address, String path,
+            String secretToken, int maxBodySize) {
+        Preconditions.notNull(handler, "handler");
+        Preconditions.notNull(bot, "bot");
+        Preconditions.notNull(address, "address");
+        Preconditions.notNull(path, "path");
+        if (!path.startsWith("/"))
+            throw new IllegalArgumentException("path must start with '/'");
+        if (maxBodySize <= 0)
+            throw new IllegalArgumentException("maxBodySize must be positive");
+        this.handler = handler;
+        this.bot = bot;
+        this.address = address;
+        this.path = path.getBytes(StandardCharsets.US_ASCII);
+        this.secretToken = secretToken == null ? null : secretToken.getBytes(StandardCharsets.US_ASCII);
+        this.maxBodySize = maxBodySize;
+    }
+
+    /**
+     * Sets the maximum amount of open connections. Further connections are answered with
+     * {@code 503 Service Unavailable} and closed right away.
+     *
+     * @param maxConnections the maximum amount of connections
+     * @throws IllegalArgumentException if maxConnections is not positive
+     * @throws IllegalStateException if the server is running
+     */
+    public synchronized void setMaxConnections(int maxConnections) {
+        if (maxConnections <= 0)
+            throw new IllegalArgumentException("maxConnections must be positive");
+        if (running)
+            throw new IllegalStateException("Webhook server is running");
+        this.maxConnections = maxConnections;
+    }
+
+    /**
+     * Gets the maximum amount of open connections.
+     *
+     * @return the maximum amount of connections
+     */
+    public synchronized int getMaxConnections() {
+        return maxConnections;
+    }
+
+    /**
+     * Sets the time a connection may stay idle or take to send a request before it is closed.
+     * The timer restarts after every request served, so it bounds both idle keep-alive
+     * connections and clients sending their request too slowly.
+     *
+     * @param timeout the timeout
+     * @param unit the unit of the timeout
+     * @throws IllegalArgumentException if timeout is not positive
+     * @throws IllegalStateException if the server is running
+     */
+    public synchronized void setIdleTimeout(long timeout, TimeUnit unit) {
+        if (timeout <= 0)
+            throw new IllegalArgumentException("timeout must be positive");
+        if (running)
+            throw new IllegalStateException("Webhook server is running");
+        this.idleTimeout = unit.toNanos(timeout);
+    }
+
+    /**
+     * Gets the time a connection may take to complete a request.
+     *
+     * @param unit the unit to return the timeout in
+     * @return the timeout
+     */
+    public synchronized long getIdleTimeout(TimeUnit unit) {
+        return unit.convert(idleTimeout, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Binds the server and starts the selector thread. Does nothing if the server is already running.
+     *
+     * @throws IOException if the address cannot be bound
+     */
+    public synchronized void start() throws IOException {
+        if (running)
+            return;
+        Selector selector = Selector.open();
+        ServerSocketChannel serverChannel = ServerSocketChannel.open();
+        try {
+            serverChannel.bind(address);
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            serverChannel.close();
+            selector.close();
+            throw e;
+        }
+        this.selector = selector;
+        this.serverChannel = serverChannel;
+        connections = 0;
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "telegram-webhook");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+    }
+
+    /**
+     * Stops accepting requests and closes all connections. Updates already queued keep dispatching.
+     */
+    @Override
+    public synchronized void close() {
+        if (!running)
+            return;
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        selectorThread = null;
+        serverChannel = null;
+        selector = null;
+    }
+
+    /**
+     * Checks whether the server is running.
+     *
+     * @return true if the server was started and not closed yet
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Gets the port the server listens on, useful if it was bound to port 0.
+     *
+     * @return the local port, or -1 if the server is not running
+     */
+    public synchronized int getPort() {
+        return serverChannel == null ? -1 : serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * Accepts connections and serves requests until the server is closed.
+     */
+    private void selectLoop() {
+        long sweepInterval = Math.max(TimeUnit.NANOSECONDS.toMillis(idleTimeout) / 2, 1);
+        long lastSweep = System.nanoTime();
+        try {
+            while (running) {
+                selector.select(sweepInterval);
+                long now = System.nanoTime();
+                if (TimeUnit.NANOSECONDS.toMillis(now - lastSweep) >= sweepInterval) {
+                    lastSweep = now;
+                    closeExpired(now);
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid())
+                            continue;
+                        if (key.isAcceptable())
+                            accept();
+                        else if (key.isReadable())
+                            read(key);
+                        else if (key.isWritable())
+                            write(key);
+                    } catch (IOException e) {
+                        closeConnection(key);
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException e) {
+            if (running)
+                LOGGER.log(Level.SEVERE, "Webhook server failed", e);
+        } finally {
+            running = false;
+            for (SelectionKey key : selector.keys())
+                closeConnection(key);
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Closes connections that did not complete a request in time.
+     *
+     * @param now the current time in nanoseconds
+     */
+    private void closeExpired(long now) {
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (attachment instanceof WebhookConnection && ((WebhookConnection) attachment).deadline - now <= 0)
+                closeConnection(key);
+        }
+    }
+
+    /**
+     * Accepts a pending connection, or refuses it if too many connections are open.
+     *
+     * @throws IOException if the connection cannot be configured
+     */
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null)
+            return;
+        channel.configureBlocking(false);
+        if (connections >= maxConnections) {
+            try {
+                channel.write(ByteBuffer.wrap(TOO_MANY_CONNECTIONS));
+            } catch (IOException ignored) {
+            } finally {
+                channel.close();
+            }
+            return;
+        }
+        try {
+            WebhookConnection connection = new WebhookConnection(channel, System.nanoTime() + idleTimeout);
+            channel.register(selector, SelectionKey.OP_READ, connection);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        connections++;
+    }
+
+    /**
+     * Reads available bytes of a connection and serves every complete request.
+     *
+     * @param key the selection key of the connection
+     * @throws IOException if the connection failed
+     */
+    private void read(SelectionKey key) throws IOException {
+        WebhookConnection connection = (WebhookConnection) key.attachment();
+        if (!connection.in.hasRemaining())
+            connection.ensureCapacity(connection.in.capacity() + 1);
+        if (connection.channel.read(connection.in) < 0) {
+            closeConnection(key);
+            return;
+        }
+        while (!connection.closeAfterWrite && serve(connection)) {
+            // serve pipelined requests
+        }
+        write(key);
+    }
+
+    /**
+     * Writes the pending response of a connection.
+     *
+     * @param key the selection key of the connection
+     * @throws IOException if the connection failed
+     */
+    private void write(SelectionKey key) throws IOException {
+        WebhookConnection connection = (WebhookConnection) key.attachment();
+        if (connection.out != null)
+            connection.channel.write(connection.out);
+        if (connection.out != null && connection.out.hasRemaining()) {
+            key.interestOps(SelectionKey.OP_WRITE);
+            return;
+        }
+        connection.out = null;
+        if (connection.closeAfterWrite)
+            closeConnection(key);
+        else
+            key.interestOps(SelectionKey.OP_READ);
+    }
+
+    /**
+     * Serves the first request buffered on a connection, if it was received completely.
+     *
+     * @param connection the connection
+     * @return true if a request was consumed and another one may follow
+     */
+    private boolean serve(WebhookConnection connection) {
+        ByteBuffer in = connection.in;
+        int received = in.position();
+        int headerEnd = findHeaderEnd(in, received);
+        if (headerEnd < 0) {
+            if (received >= MAX_HEADER_SIZE)
+                connection.respond(HEADERS_TOO_LARGE, true);
+            return false;
+        }
+        if (headerEnd > MAX_HEADER_SIZE) {
+            connection.respond(HEADERS_TOO_LARGE, true);
+            return false;
+        }
+
+        int lineEnd = lineEnd(in, 0, headerEnd);
+        int methodEnd = indexOf(in, 0, lineEnd, (byte) ' ');
+        int targetEnd = methodEnd < 0 ? -1 : indexOf(in, methodEnd + 1, lineEnd, (byte) ' ');
+        if (targetEnd < 0) {
+            connection.respond(BAD_REQUEST, true);
+            return false;
+        }
+        if (!equalsAt(in, 0, methodEnd, POST, false)) {
+            connection.respond(METHOD_NOT_ALLOWED, true);
+            return false;
+        }
+        int pathEnd = indexOf(in, methodEnd + 1, targetEnd, (byte) '?');
+        if (!equalsAt(in, methodEnd + 1, pathEnd < 0 ? targetEnd : pathEnd, path, false)) {
+            connection.respond(NOT_FOUND, true);
+            return false;
+        }
+
+        long contentLength = -1;
+        boolean authorized = secretToken == null;
+        boolean close = false;
+        for (int start = lineEnd + 2; start < headerEnd; start = lineEnd(in, start, headerEnd) + 2) {
+            int end = lineEnd(in, start, headerEnd);
+            int colon = indexOf(in, start, end, (byte) ':');
+            if (colon < 0)
+                continue;
+            int valueStart = colon + 1;
+            while (valueStart < end && in.get(valueStart) == ' ')
+                valueStart++;
+            int valueEnd = end;
+            while (valueEnd > valueStart && in.get(valueEnd - 1) == ' ')
+                valueEnd--;
+            if (equalsAt(in, start, colon, CONTENT_LENGTH, true))
+                contentLength = parseLength(in, valueStart, valueEnd);
+            else if (equalsAt(in, start, colon, TRANSFER_ENCODING, true))
+                contentLength = -2;
+            else if (equalsAt(in, start, colon, CONNECTION, true))
+                close = equalsAt(in, valueStart, valueEnd, CLOSE, true);
+            else if (secretToken != null && equalsAt(in, start, colon, SECRET_TOKEN, true))
+                authorized = matchesSecret(in, valueStart, valueEnd);
+        }
+        if (!authorized) {
+            connection.respond(FORBIDDEN, true);
+            return false;
+        }
+        if (contentLength < 0) {
+            connection.respond(contentLength == -2 ? LENGTH_REQUIRED : BAD_REQUEST, true);
+            return false;
+        }
+        if (contentLength > maxBodySize) {
+            connection.respond(PAYLOAD_TOO_LARGE, true);
+            return false;
+        }
+
+        int bodyStart = headerEnd + 4;
+        int bodyEnd = bodyStart + (int) contentLength;
+        if (received < bodyEnd) {
+            connection.ensureCapacity(bodyEnd);
+            return false;
+        }
+
+        byte[] response = accept(in, bodyStart, bodyEnd);
+        in.flip();
+        in.position(bodyEnd);
+        in.compact();
+        boolean accepted = response != BAD_REQUEST;
+        connection.respond(response, close || !accepted);
+        connection.deadline = System.nanoTime() + idleTimeout;
+        return !close && accepted;
+    }
+
+    /**
+     * Parses an update from a request body and queues its dispatch without blocking.
+     *
+     * @param in the connection buffer
+     * @param bodyStart the offset of the body
+     * @param bodyEnd the end offset of the body
+     * @return the response, {@link #BAD_REQUEST} if the body is not a valid update and
+     *         {@link #SERVICE_UNAVAILABLE} if the dispatch executor rejected it
+     */
+    private byte[] accept(ByteBuffer in, int bodyStart, int bodyEnd) {
+        ByteBuffer body = in.duplicate();
+        body.limit(bodyEnd).position(bodyStart);
+        Update update;
+        try (Reader reader = new InputStreamReader(new ByteBufferInputStream(body), StandardCharsets.UTF_8)) {
+            update = BotUtils.parseUpdate(reader);
+        } catch (IOException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Received malformed update", e);
+            return BAD_REQUEST;
+        }
+        if (update == null)
+            return BAD_REQUEST;
+        CompletableFuture<Void> dispatch = handler.tryDispatchAsync(bot, update);
+        if (dispatch.isCompletedExceptionally() && isRejected(dispatch))
+            return SERVICE_UNAVAILABLE;
+        dispatch.exceptionally(t -> {
+            LOGGER.log(Level.SEVERE, "Failed to dispatch update " + update.updateId(), t);
+            return null;
+        });
+        return OK;
+    }
+
+    /**
+     * Checks whether a failed dispatch was rejected by the dispatch executor.
+     *
+     * @param dispatch the completed dispatch
+     * @return true if the dispatch failed with a {@link RejectedExecutionException}
+     */
+    private static boolean isRejected(CompletableFuture<Void> dispatch) {
+        try {
+            dispatch.join();
+            return false;
+        } catch (CompletionException e) {
+            return e.getCause() instanceof RejectedExecutionException;
+        }
+    }
+
+    /**
+     * Closes a connection, ignoring failures.
+     *
+     * @param key the selection key of the connection
+     */
+    private void closeConnection(SelectionKey key) {
+        if (key.attachment() instanceof WebhookConnection && key.attach(null) != null)
+            connections--;
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+        }
+    }
+
+    /**
+     * Compares the secret token header in constant time.
+     *
+     * @param in the connection buffer
+     * @param start the offset of the header value
+     * @param end the end offset of the header value
+     * @return true if the header matches the secret token
+     */
+    private boolean matchesSecret(ByteBuffer in, int start, int end) {
+        byte[] value = new byte[end - start];
+        for (int i = 0; i < value.length; i++)
+            value[i] = in.get(start + i);
+        return MessageDigest.isEqual(value, secretToken);
+    }
+
+    /**
+     * Finds the end of the request headers.
+     *
+     * @param in the buffer
+     * @param received the amount of bytes received
+     * @return the offset of the blank line separator, or -1 if it was not received yet
+     */
+    private static int findHeaderEnd(ByteBuffer in, int received) {
+        for (int i = 0; i + 3 < received; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n' && in.get(i + 2) == '\r' && in.get(i + 3) == '\n')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds a byte.
+     *
+     * @param in the buffer
+     * @param from the offset to search from
+     * @param to the end offset to search to
+     * @param b the byte to find
+     * @return the offset of the byte, or -1 if it is not present
+     */
+    private static int indexOf(ByteBuffer in, int from, int to, byte b) {
+        for (int i = from; i < to; i++) {
+            if (in.get(i) == b)
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the end of a header line.
+     *
+     * @param in the buffer
+     * @param from the offset of the line
+     * @param headerEnd the end offset of the headers
+     * @return the offset of the line's CRLF, or headerEnd for the last line
+     */
+    private static int lineEnd(ByteBuffer in, int from, int headerEnd) {
+        for (int i = from; i + 1 < headerEnd; i++) {
+            if (in.get(i) == '\r' && in.get(i + 1) == '\n')
+                return i;
+        }
+        return headerEnd;
+    }
+
+    /**
+     * Compares a buffer region with ASCII bytes.
+     *
+     * @param in the buffer
+     * @param start the offset of the region
+     * @param end the end offset of the region
+     * @param expected the expected bytes, lower case if ignoreCase is set
+     * @param ignoreCase whether to compare case-insensitively
+     * @return true if the region equals the expected bytes
+     */
+    private static boolean equalsAt(ByteBuffer in, int start, int end, byte[] expected, boolean ignoreCase) {
+        if (end - start != expected.length)
+            return false;
+        for (int i = 0; i < expected.length; i++) {
+            byte b = in.get(start + i);
+            if (ignoreCase && b >= 'A' && b <= 'Z')
+                b += 'a' - 'A';
+            if (b != expected[i])
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Parses a decimal Content-Length value.
+     *
+     * @param in the buffer
+     * @param start the offset of the value
+     * @param end the end offset of the value
+     * @return the length, or -1 if the value is not a valid length
+     */
+    private static long parseLength(ByteBuffer in, int start, int end) {
+        if (start == end || end - start > 10)
+            return -1;
+        long length = 0;
+        for (int i = start; i < end; i++) {
+            byte b = in.get(i);
+            if (b < '0' || b > '9')
+                return -1;
+            length = length * 10 + (b - '0');
+        }
+        return length;
+    }
+
+    /**
+     * Encodes an empty HTTP response.
+     *
+     * @param status the status line
+     * @param close whether the connection is closed after the response
+     * @return the response bytes
+     */
+    private static byte[] response(String status, boolean close) {
+        return ("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\n" + (close ? "Connection: close\r\n" : "") + "\r\n")
+                .getBytes(StandardCharsets.US_ASCII);
+    }
+}
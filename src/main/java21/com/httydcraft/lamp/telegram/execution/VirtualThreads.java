@@ -0,0 +1,34 @@
+package com.httydcraft.lamp.telegram.execution;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access point to virtual threads. This is the Java 21+ variant packaged into the
+ * multi-release jar, replacing the unsupported Java 8 variant.
+ *
+ * @see VirtualThreadExecutor
+ */
+public final class VirtualThreads {
+    private VirtualThreads() {
+    }
+
+    /**
+     * Checks whether virtual threads are available on the running JVM.
+     *
+     * @return true if virtual threads can be used
+     */
+    public static boolean isSupported() {
+        return true;
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread for every task.
+     *
+     * @param namePrefix the name prefix of the created threads
+     * @return the executor
+     */
+    static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name(namePrefix, 0).factory());
+    }
+}